@@ -19,12 +19,20 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
+import io.github.leo40git.sltbg.app.Main;
+import io.github.leo40git.sltbg.app.text.FontFallbackChain;
+import io.github.leo40git.sltbg.app.text.FontTable;
+import io.leo40git.sltbg.gamedata.IconSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
@@ -43,11 +51,19 @@ public final class GameAssets {
     public static final int ICON_SHEET_WIDTH = ICON_SIZE * ICONS_PER_ROW;
     public static final float DEFAULT_FONT_SIZE = 18;
     public static final int FACE_SIZE = 96;
+    // where faces and text go inside a textbox
+    public static final int TEXTBOX_FACE_X = 12;
+    public static final int TEXTBOX_FACE_Y = 12;
+    public static final int TEXTBOX_TEXT_X = 16;
+    public static final int TEXTBOX_TEXT_X_WITH_FACE = TEXTBOX_TEXT_X + FACE_SIZE + 12;
+    public static final int TEXTBOX_TEXT_Y = 12;
+    public static final int TEXTBOX_TEXT_HEIGHT = TEXTBOX_HEIGHT - TEXTBOX_TEXT_Y * 2;
 
     private static Color[] palette;
-    private static BufferedImage textboxSheet, iconSheet;
-    private static int maximumIconIndex;
-    private static Font font, fontAtDefaultSize;
+    private static BufferedImage textboxSheet;
+    private static IconSet iconSet;
+    private static Font font;
+    private static FontFallbackChain fontChain;
     private static Map<String, Map<String, Face>> faces;
 
     private GameAssets() {
@@ -57,9 +73,9 @@ public final class GameAssets {
     public static void load() throws IOException {
         palette = null;
         textboxSheet = null;
-        iconSheet = null;
+        iconSet = null;
         font = null;
-        fontAtDefaultSize = null;
+        fontChain = null;
         faces = null;
 
         if (!Files.isDirectory(ROOT_FOLDER)) {
@@ -109,6 +125,7 @@ public final class GameAssets {
                     .formatted(textboxSheetPath, TEXTBOX_WIDTH, TEXTBOX_HEIGHT * 3, textboxSheet.getWidth(), textboxSheet.getHeight()));
         }
 
+        BufferedImage iconSheet;
         var iconSheetPath = ROOT_FOLDER.resolve("iconset.png");
         try (var in = Files.newInputStream(iconSheetPath)) {
             iconSheet = ImageIO.read(in);
@@ -125,7 +142,18 @@ public final class GameAssets {
             throw new IOException("Image '%s' has invalid dimensions: height %d is not divisible by %d"
                     .formatted(iconSheetPath, iconSheet.getHeight(), ICON_SIZE));
         }
-        maximumIconIndex = (iconSheet.getHeight() / ICON_SIZE) * ICONS_PER_ROW - 1;
+
+        // names are optional, icons can always be referred to by their index
+        var iconNamesPath = ROOT_FOLDER.resolve("icons.json5");
+        if (Files.exists(iconNamesPath)) {
+            try (var reader = JsonReader.json5(iconNamesPath)) {
+                iconSet = IconSet.read(iconSheet, reader);
+            } catch (IllegalStateException | IOException e) {
+                throw new IOException("Failed to read icon names from '%s'".formatted(iconNamesPath), e);
+            }
+        } else {
+            iconSet = new IconSet(iconSheet);
+        }
 
         var fontPath = ROOT_FOLDER.resolve("font.ttf");
         try (var in = Files.newInputStream(fontPath)) {
@@ -134,6 +162,20 @@ public final class GameAssets {
             throw new IOException("Failed to read font at '%s'".formatted(fontPath), e);
         }
 
+        // fallback fonts are optional, without any configured Java's logical Dialog font stands in for them
+        List<Font> fallbackFonts;
+        var fallbackFontsPath = ROOT_FOLDER.resolve("fallback_fonts.json5");
+        if (Files.exists(fallbackFontsPath)) {
+            try (var reader = JsonReader.json5(fallbackFontsPath)) {
+                fallbackFonts = loadFallbackFonts(reader);
+            } catch (IllegalStateException | IOException e) {
+                throw new IOException("Failed to read fallback fonts from '%s'".formatted(fallbackFontsPath), e);
+            }
+        } else {
+            fallbackFonts = List.of(new Font(Font.DIALOG, Font.PLAIN, 1));
+        }
+        fontChain = new FontFallbackChain(font, fallbackFonts);
+
         var facesPath = ROOT_FOLDER.resolve("faces.json5");
         try (var reader = JsonReader.json5(facesPath)) {
             faces = new LinkedHashMap<>();
@@ -153,6 +195,43 @@ public final class GameAssets {
         GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(font);
     }
 
+    // every entry is either a font file in the root folder, or the family name of an installed font
+    private static @NotNull List<Font> loadFallbackFonts(@NotNull JsonReader reader) throws IOException {
+        var fonts = new ArrayList<Font>();
+        Set<String> installedFamilies = null;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = reader.nextString();
+            String lowerName = name.toLowerCase(Locale.ROOT);
+            if (lowerName.endsWith(".ttf") || lowerName.endsWith(".otf")) {
+                var fontPath = ROOT_FOLDER.resolve(name);
+                try (var in = Files.newInputStream(fontPath)) {
+                    fonts.add(Font.createFont(Font.TRUETYPE_FONT, in));
+                } catch (IOException | FontFormatException e) {
+                    throw new IOException("Failed to read fallback font at '%s'".formatted(fontPath), e);
+                }
+            } else {
+                if (installedFamilies == null) {
+                    installedFamilies = Set.of(GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames());
+                }
+                if (installedFamilies.contains(name)) {
+                    fonts.add(new Font(name, Font.PLAIN, 1));
+                } else {
+                    // not every machine has the same fonts, so this isn't worth failing over
+                    Main.logger().warn("Fallback font family '{}' isn't installed, ignoring", name);
+                }
+            }
+        }
+        reader.endArray();
+
+        if (fonts.size() >= FontFallbackChain.MAX_FONTS) {
+            throw new IOException("Too many fallback fonts (must be less than %d, but got %d)"
+                    .formatted(FontFallbackChain.MAX_FONTS, fonts.size()));
+        }
+        return fonts;
+    }
+
     private static @NotNull Map<String, Face> loadFacesCategory(@NotNull JsonReader reader, @NotNull String category) throws IOException {
         var faces = new LinkedHashMap<String, GameAssets.Face>();
 
@@ -236,7 +315,7 @@ public final class GameAssets {
 
         g.drawImage(textboxSheet,
                 x, y, x + TEXTBOX_WIDTH, y + TEXTBOX_HEIGHT,
-                0, TEXTBOX_HEIGHT, TEXTBOX_WIDTH, TEXTBOX_HEIGHT,
+                0, TEXTBOX_HEIGHT, TEXTBOX_WIDTH, TEXTBOX_HEIGHT * 2,
                 null);
     }
 
@@ -247,53 +326,51 @@ public final class GameAssets {
 
         g.drawImage(textboxSheet,
                 x, y, x + TEXTBOX_WIDTH, y + TEXTBOX_HEIGHT,
-                0, TEXTBOX_HEIGHT * 2, TEXTBOX_WIDTH, TEXTBOX_HEIGHT,
+                0, TEXTBOX_HEIGHT * 2, TEXTBOX_WIDTH, TEXTBOX_HEIGHT * 3,
                 null);
     }
 
-    public static @NotNull BufferedImage getIconSheet() {
-        if (iconSheet == null) {
+    public static @NotNull IconSet getIconSet() {
+        if (iconSet == null) {
             throw new IllegalStateException("Game assets haven't been loaded yet (or failed to load)");
         }
 
-        return iconSheet;
+        return iconSet;
     }
 
-    public static @Range(from = 0, to = Integer.MAX_VALUE) int getMaximumIconIndex() {
-        return maximumIconIndex;
+    @TestOnly
+    public static void setIconSet(@NotNull IconSet iconSet) {
+        GameAssets.iconSet = iconSet;
     }
 
-    public static void drawIcon(@NotNull Graphics g, int x, int y, @Range(from = 0, to = Integer.MAX_VALUE) int index) {
-        if (iconSheet == null) {
-            throw new IllegalStateException("Game assets haven't been loaded yet (or failed to load)");
-        }
-
-        if (index > maximumIconIndex) {
-            throw new IndexOutOfBoundsException(index);
-        }
+    public static @NotNull BufferedImage getIconSheet() {
+        return getIconSet().getSheet();
+    }
 
-        int sx = (index % ICONS_PER_ROW) * ICON_SIZE;
-        int sy = (index / ICONS_PER_ROW) * ICON_SIZE;
+    public static int getTextboxTextX(boolean hasFace) {
+        return hasFace ? TEXTBOX_TEXT_X_WITH_FACE : TEXTBOX_TEXT_X;
+    }
 
-        g.drawImage(iconSheet,
-                x, y, x + ICON_SIZE, y + ICON_SIZE,
-                sx, sy, sx + ICON_SIZE, sy + ICON_SIZE,
-                null);
+    // text gets the same amount of padding on the right as on the left
+    public static int getTextboxTextWidth(boolean hasFace) {
+        return TEXTBOX_WIDTH - getTextboxTextX(hasFace) - TEXTBOX_TEXT_X;
     }
 
-    public static @NotNull BufferedImage getIconImage(@Range(from = 0, to = Integer.MAX_VALUE) int index) {
-        if (iconSheet == null) {
-            throw new IllegalStateException("Game assets haven't been loaded yet (or failed to load)");
-        }
+    public static @Range(from = 0, to = Integer.MAX_VALUE) int getMaximumIconIndex() {
+        return getIconSet().getMaximumIconIndex();
+    }
 
-        if (index > maximumIconIndex) {
-            throw new IndexOutOfBoundsException(index);
-        }
+    // returns IconSet.NO_ICON if there's no icon with this name
+    public static int getIconIndex(@NotNull String name) {
+        return getIconSet().getIconIndex(name);
+    }
 
-        int sx = (index % ICONS_PER_ROW) * ICON_SIZE;
-        int sy = (index / ICONS_PER_ROW) * ICON_SIZE;
+    public static void drawIcon(@NotNull Graphics g, int x, int y, @Range(from = 0, to = Integer.MAX_VALUE) int index) {
+        getIconSet().drawIcon(g, x, y, index, null);
+    }
 
-        return iconSheet.getSubimage(sx, sy, ICON_SIZE, ICON_SIZE);
+    public static @NotNull BufferedImage getIconImage(@Range(from = 0, to = Integer.MAX_VALUE) int index) {
+        return getIconSet().getIconImage(index);
     }
 
     public static @NotNull Font getFont() {
@@ -304,16 +381,20 @@ public final class GameAssets {
         return font;
     }
 
-    public static Font getFontAtDefaultSize() {
-        if (font == null) {
-            throw new IllegalStateException("Game assets haven't been loaded yet (or failed to load)");
-        }
+    public static @NotNull Font getFontAtDefaultSize() {
+        return getFontTable().getDefault().font();
+    }
 
-        if (fontAtDefaultSize == null) {
-            fontAtDefaultSize = font.deriveFont(DEFAULT_FONT_SIZE);
+    public static @NotNull FontTable getFontTable() {
+        return getFontChain().getPrimary();
+    }
+
+    public static @NotNull FontFallbackChain getFontChain() {
+        if (fontChain == null) {
+            throw new IllegalStateException("Game assets haven't been loaded yet (or failed to load)");
         }
 
-        return fontAtDefaultSize;
+        return fontChain;
     }
 
     public static @NotNull Map<String, Map<String, Face>> getAllFaces() {
@@ -0,0 +1,284 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.export;
+
+import java.awt.AlphaComposite;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.text.TextReveal;
+import io.github.leo40git.sltbg.app.text.TextRenderer;
+import io.github.leo40git.sltbg.app.text.element.Element;
+import io.leo40git.sltbg.swing.RenderQuality;
+import io.leo40git.sltbg.swing.gamedata.window.WindowRenderer;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+// turns a textbox into an animation: the text gets typed out one character (or icon) at a time,
+//  then the prompt arrow loops for a while
+// frames are drawn on top of the previous one, only redrawing the area the change could've touched,
+//  and only the pixels that actually changed get encoded
+public final class AnimatedTextboxExporter {
+    public enum Format {
+        APNG,
+        GIF
+    }
+
+    // delays are in milliseconds
+    public static final int DEFAULT_CHARACTER_DELAY = 20;
+    public static final int DEFAULT_PROMPT_FRAME_DELAY = 250;
+    public static final int DEFAULT_PROMPT_CYCLES = 4;
+
+    private final int characterDelay, promptFrameDelay, promptCycles, plays;
+    private final @Nullable WindowRenderer promptRenderer;
+
+    private AnimatedTextboxExporter(@NotNull Builder builder) {
+        characterDelay = builder.characterDelay;
+        promptFrameDelay = builder.promptFrameDelay;
+        promptCycles = builder.promptCycles;
+        plays = builder.plays;
+        promptRenderer = builder.promptRenderer;
+    }
+
+    public void export(@NotNull List<Element> elems, @Nullable BufferedImage face, @NotNull Format format,
+                       @NotNull OutputStream out) throws IOException {
+        final var frames = record(elems, face);
+        switch (format) {
+            case APNG -> ApngWriter.write(frames, GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, plays, out);
+            case GIF -> GifWriter.write(frames, GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, plays, out);
+        }
+    }
+
+    private @NotNull List<AnimationFrame> record(@NotNull List<Element> elems, @Nullable BufferedImage face) {
+        final var reveal = TextReveal.of(TextRenderer.layout(elems));
+        final var recorder = new Recorder(reveal, face);
+
+        final var frames = new ArrayList<AnimationFrame>(reveal.getStepCount() + promptCycles * getPromptFrameCount() + 1);
+        frames.add(recorder.start().withDelay(characterDelay));
+        for (int step = 0; step < reveal.getStepCount(); step++) {
+            addFrame(frames, recorder.reveal(step), characterDelay);
+        }
+        for (int cycle = 0; cycle < promptCycles; cycle++) {
+            for (int frame = 0; frame < getPromptFrameCount(); frame++) {
+                addFrame(frames, recorder.prompt(frame), promptFrameDelay);
+            }
+        }
+        return frames;
+    }
+
+    private int getPromptFrameCount() {
+        // without a window skin to take the prompt from, the textbox sheet's arrow just blinks
+        return promptRenderer != null ? WindowRenderer.PROMPT_FRAME_COUNT : 2;
+    }
+
+    private static void addFrame(@NotNull List<AnimationFrame> frames, @Nullable AnimationFrame frame, int delay) {
+        if (frame == null) {
+            // nothing changed, so the last frame just stays up for longer
+            final int last = frames.size() - 1;
+            frames.set(last, frames.get(last).withDelay(frames.get(last).delay() + delay));
+        } else {
+            frames.add(frame.withDelay(delay));
+        }
+    }
+
+    // keeps the canvas the animation is drawn on, along with the layers it's redrawn from
+    // frames come out of this without a delay, that's up to whoever is recording them
+    private final class Recorder {
+        private final @NotNull TextReveal reveal;
+        private final int textX;
+        // background and face, which never change
+        private final @NotNull BufferedImage base;
+        private final @NotNull BufferedImage canvas;
+
+        private int stepCount;
+        private int promptFrame = -1;
+
+        public Recorder(@NotNull TextReveal reveal, @Nullable BufferedImage face) {
+            this.reveal = reveal;
+            textX = GameAssets.getTextboxTextX(face != null);
+
+            base = new BufferedImage(GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+            var g = base.createGraphics();
+            try {
+                RenderQuality.FINAL.applyImageHints(g);
+                GameAssets.drawTextboxBackground(g, 0, 0);
+                if (face != null) {
+                    g.drawImage(face, GameAssets.TEXTBOX_FACE_X, GameAssets.TEXTBOX_FACE_Y, null);
+                }
+            } finally {
+                g.dispose();
+            }
+
+            canvas = new BufferedImage(GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        public @NotNull AnimationFrame start() {
+            final var bounds = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+            redraw(bounds);
+            return new AnimationFrame(0, 0, copy(bounds), 0);
+        }
+
+        public @Nullable AnimationFrame reveal(int step) {
+            stepCount = step + 1;
+            final var bounds = reveal.getStepBounds(step);
+            bounds.translate(textX, GameAssets.TEXTBOX_TEXT_Y);
+            return update(bounds);
+        }
+
+        public @Nullable AnimationFrame prompt(int frame) {
+            promptFrame = frame;
+            if (promptRenderer == null) {
+                // the arrow is a layer as big as the whole textbox
+                return update(new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+            }
+
+            final int size = promptRenderer.getPromptSize();
+            return update(new Rectangle(canvas.getWidth() / 2 - size / 2, canvas.getHeight() - size, size, size));
+        }
+
+        // redraws everything in bounds, and returns the part of it that actually changed (if anything did)
+        private @Nullable AnimationFrame update(@NotNull Rectangle bounds) {
+            bounds = bounds.intersection(new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+            if (bounds.isEmpty()) {
+                return null;
+            }
+
+            final var raster = canvas.getRaster();
+            final var before = (int[]) raster.getDataElements(bounds.x, bounds.y, bounds.width, bounds.height, null);
+            redraw(bounds);
+            final var after = (int[]) raster.getDataElements(bounds.x, bounds.y, bounds.width, bounds.height, null);
+
+            int minX = bounds.width, minY = bounds.height, maxX = -1, maxY = -1;
+            for (int y = 0, i = 0; y < bounds.height; y++) {
+                for (int x = 0; x < bounds.width; x++, i++) {
+                    if (before[i] != after[i]) {
+                        minX = Math.min(minX, x);
+                        maxX = Math.max(maxX, x);
+                        minY = Math.min(minY, y);
+                        maxY = y;
+                    }
+                }
+            }
+            if (maxX < 0) {
+                return null;
+            }
+
+            final var changed = new Rectangle(bounds.x + minX, bounds.y + minY, maxX - minX + 1, maxY - minY + 1);
+            return new AnimationFrame(changed.x, changed.y, copy(changed), 0);
+        }
+
+        private void redraw(@NotNull Rectangle bounds) {
+            final var g = canvas.createGraphics();
+            try {
+                g.clip(bounds);
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(base, 0, 0, null);
+                g.setComposite(AlphaComposite.SrcOver);
+                RenderQuality.FINAL.applyImageHints(g);
+                reveal.render(g, textX, GameAssets.TEXTBOX_TEXT_Y, stepCount, RenderQuality.FINAL);
+                GameAssets.drawTextboxBorder(g, 0, 0);
+                if (promptFrame >= 0) {
+                    if (promptRenderer != null) {
+                        promptRenderer.paintPromptInFrame(g, promptFrame, 0, 0, canvas.getWidth(), canvas.getHeight(),
+                                RenderQuality.FINAL, null);
+                    } else if (promptFrame == 0) {
+                        GameAssets.drawTextboxArrow(g, 0, 0);
+                    }
+                }
+            } finally {
+                g.dispose();
+            }
+        }
+
+        private @NotNull BufferedImage copy(@NotNull Rectangle bounds) {
+            final var image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+            image.getRaster().setDataElements(0, 0, bounds.width, bounds.height,
+                    canvas.getRaster().getDataElements(bounds.x, bounds.y, bounds.width, bounds.height, null));
+            return image;
+        }
+    }
+
+    public static final class Builder {
+        private int characterDelay = DEFAULT_CHARACTER_DELAY;
+        private int promptFrameDelay = DEFAULT_PROMPT_FRAME_DELAY;
+        private int promptCycles = DEFAULT_PROMPT_CYCLES;
+        private int plays = 0;
+        private @Nullable WindowRenderer promptRenderer;
+
+        private Builder() { }
+
+        // in milliseconds
+        public Builder setCharacterDelay(@Range(from = 1, to = Integer.MAX_VALUE) int characterDelay) {
+            if (characterDelay <= 0) {
+                throw new IllegalArgumentException("characterDelay must be positive, but was %d".formatted(characterDelay));
+            }
+
+            this.characterDelay = characterDelay;
+            return this;
+        }
+
+        // in milliseconds
+        public Builder setPromptFrameDelay(@Range(from = 1, to = Integer.MAX_VALUE) int promptFrameDelay) {
+            if (promptFrameDelay <= 0) {
+                throw new IllegalArgumentException("promptFrameDelay must be positive, but was %d".formatted(promptFrameDelay));
+            }
+
+            this.promptFrameDelay = promptFrameDelay;
+            return this;
+        }
+
+        public Builder setPromptCycles(@Range(from = 0, to = Integer.MAX_VALUE) int promptCycles) {
+            if (promptCycles < 0) {
+                throw new IllegalArgumentException("promptCycles can't be negative, but was %d".formatted(promptCycles));
+            }
+
+            this.promptCycles = promptCycles;
+            return this;
+        }
+
+        // how many times the whole animation plays before stopping, 0 (the default) plays it forever
+        public Builder setPlays(@Range(from = 0, to = Integer.MAX_VALUE) int plays) {
+            if (plays < 0) {
+                throw new IllegalArgumentException("plays can't be negative, but was %d".formatted(plays));
+            }
+
+            this.plays = plays;
+            return this;
+        }
+
+        // takes the prompt's animation from this window skin, instead of blinking the textbox sheet's arrow
+        public Builder setPromptRenderer(@Nullable WindowRenderer promptRenderer) {
+            this.promptRenderer = promptRenderer;
+            return this;
+        }
+
+        @Contract(" -> new")
+        public @NotNull AnimatedTextboxExporter build() {
+            return new AnimatedTextboxExporter(this);
+        }
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    @Contract(" -> new")
+    public static @NotNull AnimatedTextboxExporter create() {
+        return new AnimatedTextboxExporter(new Builder());
+    }
+}
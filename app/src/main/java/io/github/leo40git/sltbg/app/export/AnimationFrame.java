@@ -0,0 +1,22 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.export;
+
+import java.awt.image.BufferedImage;
+
+import org.jetbrains.annotations.NotNull;
+
+// the part of the canvas that changed since the previous frame, and how long (in milliseconds) to show the result for
+// the first frame of an animation always covers the whole canvas
+record AnimationFrame(int x, int y, @NotNull BufferedImage image, int delay) {
+    public @NotNull AnimationFrame withDelay(int delay) {
+        return new AnimationFrame(x, y, image, delay);
+    }
+}
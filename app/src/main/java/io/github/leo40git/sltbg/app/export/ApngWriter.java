@@ -0,0 +1,189 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.export;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+
+// ImageIO can't write animated PNGs, so this writes the chunks itself
+// every frame after the first is stored as just its own rectangle, which replaces whatever was there before
+final class ApngWriter {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int DISPOSE_OP_NONE = 0;
+    private static final int BLEND_OP_SOURCE = 0;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private ApngWriter() {
+        throw new UnsupportedOperationException("ApngWriter only contains static declarations.");
+    }
+
+    // plays is how many times the animation plays before stopping, or 0 to play it forever
+    public static void write(@NotNull List<AnimationFrame> frames, int width, int height, int plays,
+                             @NotNull OutputStream out) throws IOException {
+        final var dos = new DataOutputStream(new BufferedOutputStream(out));
+        final var chunk = new ByteArrayOutputStream();
+        final var chunkOut = new DataOutputStream(chunk);
+        final var crc = new CRC32();
+        final var deflater = new Deflater();
+
+        try {
+            dos.write(SIGNATURE);
+
+            chunkOut.writeInt(width);
+            chunkOut.writeInt(height);
+            chunkOut.writeByte(8); // bit depth
+            chunkOut.writeByte(COLOR_TYPE_RGBA);
+            chunkOut.writeByte(0); // compression
+            chunkOut.writeByte(0); // filter
+            chunkOut.writeByte(0); // interlace
+            writeChunk(dos, "IHDR", chunk, crc);
+
+            chunkOut.writeInt(frames.size());
+            chunkOut.writeInt(plays);
+            writeChunk(dos, "acTL", chunk, crc);
+
+            int sequence = 0;
+            for (int i = 0; i < frames.size(); i++) {
+                final var frame = frames.get(i);
+                final var image = frame.image();
+
+                chunkOut.writeInt(sequence++);
+                chunkOut.writeInt(image.getWidth());
+                chunkOut.writeInt(image.getHeight());
+                chunkOut.writeInt(frame.x());
+                chunkOut.writeInt(frame.y());
+                // delays are a fraction, this keeps them in milliseconds as long as they fit
+                if (frame.delay() <= 0xFFFF) {
+                    chunkOut.writeShort(frame.delay());
+                    chunkOut.writeShort(1000);
+                } else {
+                    chunkOut.writeShort(Math.min(frame.delay() / 10, 0xFFFF));
+                    chunkOut.writeShort(100);
+                }
+                chunkOut.writeByte(DISPOSE_OP_NONE);
+                chunkOut.writeByte(BLEND_OP_SOURCE);
+                writeChunk(dos, "fcTL", chunk, crc);
+
+                // the first frame doubles as the default image, the rest go into frame data chunks
+                if (i > 0) {
+                    chunkOut.writeInt(sequence++);
+                }
+                deflater.reset();
+                try (var zout = new DeflaterOutputStream(chunk, deflater, 8192)) {
+                    writeImageData(zout, image);
+                }
+                writeChunk(dos, i == 0 ? "IDAT" : "fdAT", chunk, crc);
+            }
+
+            writeChunk(dos, "IEND", chunk, crc);
+            dos.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeChunk(@NotNull DataOutputStream out, @NotNull String type, @NotNull ByteArrayOutputStream data,
+                                   @NotNull CRC32 crc) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        out.writeInt(data.size());
+        out.write(typeBytes);
+        data.writeTo(out);
+
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        data.reset();
+    }
+
+    // filters every row with whichever filter gives the smallest sum of absolute differences, as libpng does
+    private static void writeImageData(@NotNull OutputStream out, @NotNull BufferedImage image) throws IOException {
+        final int width = image.getWidth(), height = image.getHeight();
+        final int rowLength = width * 4;
+        final int[] argb = new int[width];
+        byte[] prev = new byte[rowLength], row = new byte[rowLength];
+        final byte[][] filtered = new byte[5][rowLength];
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, argb, 0, width);
+            for (int x = 0, o = 0; x < width; x++) {
+                final int c = argb[x];
+                row[o++] = (byte) (c >>> 16);
+                row[o++] = (byte) (c >>> 8);
+                row[o++] = (byte) c;
+                row[o++] = (byte) (c >>> 24);
+            }
+
+            int best = FILTER_NONE;
+            long bestSum = Long.MAX_VALUE;
+            for (int filter = FILTER_NONE; filter <= FILTER_PAETH; filter++) {
+                final byte[] dst = filtered[filter];
+                long sum = 0;
+                for (int i = 0; i < rowLength; i++) {
+                    final int a = i >= 4 ? row[i - 4] & 0xFF : 0;
+                    final int b = prev[i] & 0xFF;
+                    final int c = i >= 4 ? prev[i - 4] & 0xFF : 0;
+                    final int predictor = switch (filter) {
+                        case FILTER_SUB -> a;
+                        case FILTER_UP -> b;
+                        case FILTER_AVERAGE -> (a + b) >>> 1;
+                        case FILTER_PAETH -> paeth(a, b, c);
+                        default -> 0;
+                    };
+                    final byte value = (byte) (row[i] - predictor);
+                    dst[i] = value;
+                    sum += Math.abs((int) value);
+                }
+                if (sum < bestSum) {
+                    best = filter;
+                    bestSum = sum;
+                }
+            }
+
+            out.write(best);
+            out.write(filtered[best]);
+
+            final byte[] swap = prev;
+            prev = row;
+            row = swap;
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        } else if (pb <= pc) {
+            return b;
+        } else {
+            return c;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.export;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import org.jetbrains.annotations.NotNull;
+
+// goes through ImageIO's GIF writer, which picks a palette for every frame on its own
+// GIFs only have fully transparent or fully opaque pixels, so the textbox's translucent background gets rounded
+//  to one or the other (ImageIO would otherwise drop anything that isn't fully opaque)
+// a frame also can't turn a pixel transparent again (transparent pixels in a frame just leave the previous one alone),
+//  which textboxes don't need
+final class GifWriter {
+    private static final String STREAM_METADATA_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String IMAGE_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+    private GifWriter() {
+        throw new UnsupportedOperationException("GifWriter only contains static declarations.");
+    }
+
+    // plays is how many times the animation plays before stopping, or 0 to play it forever
+    public static void write(@NotNull List<AnimationFrame> frames, int width, int height, int plays,
+                             @NotNull OutputStream out) throws IOException {
+        final var writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("No GIF writer available");
+        }
+        final ImageWriter writer = writers.next();
+
+        try (var ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            writer.prepareWriteSequence(createStreamMetadata(writer, width, height));
+            for (int i = 0; i < frames.size(); i++) {
+                final var frame = frames.get(i);
+                final var image = toBitmaskAlpha(frame.image());
+                final var metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+                writeFrameMetadata(metadata, frame, i == 0 ? plays : -1);
+                writer.writeToSequence(new IIOImage(image, null, metadata), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static @NotNull BufferedImage toBitmaskAlpha(@NotNull BufferedImage image) {
+        final int width = image.getWidth(), height = image.getHeight();
+        final int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (pixels[i] >>> 24) >= 0x80 ? pixels[i] | 0xFF000000 : 0;
+        }
+
+        final var result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        result.setRGB(0, 0, width, height, pixels, 0, width);
+        return result;
+    }
+
+    // frames only cover what changed, so the canvas they're drawn on needs to be sized explicitly
+    private static @NotNull IIOMetadata createStreamMetadata(@NotNull ImageWriter writer, int width, int height) throws IOException {
+        final var metadata = writer.getDefaultStreamMetadata(null);
+        final var root = (IIOMetadataNode) metadata.getAsTree(STREAM_METADATA_FORMAT);
+
+        final var descriptor = getOrAddChild(root, "LogicalScreenDescriptor");
+        descriptor.setAttribute("logicalScreenWidth", Integer.toString(width));
+        descriptor.setAttribute("logicalScreenHeight", Integer.toString(height));
+        descriptor.setAttribute("colorResolution", "8");
+        descriptor.setAttribute("pixelAspectRatio", "0");
+
+        metadata.setFromTree(STREAM_METADATA_FORMAT, root);
+        return metadata;
+    }
+
+    private static void writeFrameMetadata(@NotNull IIOMetadata metadata, @NotNull AnimationFrame frame, int plays) throws IOException {
+        final var root = (IIOMetadataNode) metadata.getAsTree(IMAGE_METADATA_FORMAT);
+
+        final var descriptor = getOrAddChild(root, "ImageDescriptor");
+        descriptor.setAttribute("imageLeftPosition", Integer.toString(frame.x()));
+        descriptor.setAttribute("imageTopPosition", Integer.toString(frame.y()));
+        descriptor.setAttribute("imageWidth", Integer.toString(frame.image().getWidth()));
+        descriptor.setAttribute("imageHeight", Integer.toString(frame.image().getHeight()));
+
+        final var control = getOrAddChild(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "doNotDispose");
+        control.setAttribute("userInputFlag", "FALSE");
+        // GIF delays are in hundredths of a second
+        control.setAttribute("delayTime", Integer.toString(Math.min((frame.delay() + 5) / 10, 0xFFFF)));
+
+        // the NETSCAPE2.0 extension counts repeats rather than plays, and leaving it out means playing just once
+        if (plays == 0 || plays > 1) {
+            final int repeats = plays == 0 ? 0 : Math.min(plays - 1, 0xFFFF);
+            final var extension = new IIOMetadataNode("ApplicationExtension");
+            extension.setAttribute("applicationID", "NETSCAPE");
+            extension.setAttribute("authenticationCode", "2.0");
+            extension.setUserObject(new byte[] { 1, (byte) repeats, (byte) (repeats >>> 8) });
+            getOrAddChild(root, "ApplicationExtensions").appendChild(extension);
+        }
+
+        metadata.setFromTree(IMAGE_METADATA_FORMAT, root);
+    }
+
+    private static @NotNull IIOMetadataNode getOrAddChild(@NotNull IIOMetadataNode root, @NotNull String name) {
+        for (int i = 0; i < root.getLength(); i++) {
+            if (root.item(i) instanceof IIOMetadataNode node && name.equals(node.getNodeName())) {
+                return node;
+            }
+        }
+        final var node = new IIOMetadataNode(name);
+        root.appendChild(node);
+        return node;
+    }
+}
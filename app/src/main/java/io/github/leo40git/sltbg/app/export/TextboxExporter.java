@@ -0,0 +1,132 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.export;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.text.TextRenderProgram;
+import io.github.leo40git.sltbg.app.text.TextRenderer;
+import io.github.leo40git.sltbg.app.text.element.Element;
+import io.github.leo40git.sltbg.app.util.GraphicsState;
+import io.leo40git.sltbg.swing.RenderQuality;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// turns a textbox's contents into images, at the game's own resolution or scaled up for trailers and store pages
+public final class TextboxExporter {
+    private TextboxExporter() {
+        throw new UnsupportedOperationException("TextboxExporter only contains static declarations.");
+    }
+
+    public static @NotNull BufferedImage export(@NotNull List<Element> elems, @Nullable BufferedImage face) {
+        return rasterize(compile(elems), face, 1);
+    }
+
+    public static BufferedImage @NotNull [] exportScaled(@NotNull List<Element> elems, @Nullable BufferedImage face,
+                                                         double @NotNull ... scales) {
+        return exportScaled(elems, face, scales, ForkJoinPool.commonPool());
+    }
+
+    // the text is laid out once and then rasterized at every scale in parallel, images are in the same order as scales
+    public static BufferedImage @NotNull [] exportScaled(@NotNull List<Element> elems, @Nullable BufferedImage face,
+                                                         double @NotNull [] scales, @NotNull ForkJoinPool pool) {
+        for (double scale : scales) {
+            if (!(scale > 0) || Double.isInfinite(scale)) {
+                throw new IllegalArgumentException("scale must be positive and finite, but was %g".formatted(scale));
+            }
+        }
+
+        final var program = compile(elems);
+        final var images = new BufferedImage[scales.length];
+        if (images.length == 1) {
+            images[0] = rasterize(program, face, scales[0]);
+        } else if (images.length > 1) {
+            pool.invoke(new RasterizeTask(program, face, scales, images, 0, images.length));
+        }
+        return images;
+    }
+
+    // paints a whole textbox with its top-left corner at (0, 0), in whatever scale g is in
+    public static void paint(@NotNull Graphics2D g, @NotNull TextRenderProgram program, @Nullable BufferedImage face,
+                             @NotNull RenderQuality quality) {
+        var oldState = GraphicsState.save(g);
+        try {
+            g.setComposite(AlphaComposite.SrcOver);
+            quality.applyImageHints(g);
+            GameAssets.drawTextboxBackground(g, 0, 0);
+            if (face != null) {
+                g.drawImage(face, GameAssets.TEXTBOX_FACE_X, GameAssets.TEXTBOX_FACE_Y, null);
+            }
+            TextRenderer.render(g, GameAssets.getTextboxTextX(face != null), GameAssets.TEXTBOX_TEXT_Y, program, quality);
+            GameAssets.drawTextboxBorder(g, 0, 0);
+            GameAssets.drawTextboxArrow(g, 0, 0);
+        } finally {
+            oldState.restore(g);
+        }
+    }
+
+    private static @NotNull TextRenderProgram compile(@NotNull List<Element> elems) {
+        return TextRenderProgram.compile(TextRenderer.layout(elems));
+    }
+
+    private static @NotNull BufferedImage rasterize(@NotNull TextRenderProgram program, @Nullable BufferedImage face, double scale) {
+        final var image = new BufferedImage(
+                (int) Math.ceil(GameAssets.TEXTBOX_WIDTH * scale), (int) Math.ceil(GameAssets.TEXTBOX_HEIGHT * scale),
+                BufferedImage.TYPE_INT_ARGB);
+        final var g = image.createGraphics();
+        try {
+            if (scale != 1) {
+                g.scale(scale, scale);
+            }
+            // exports always get full quality
+            paint(g, program, face, RenderQuality.FINAL);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static final class RasterizeTask extends RecursiveAction {
+        private final @NotNull TextRenderProgram program;
+        private final @Nullable BufferedImage face;
+        private final double @NotNull [] scales;
+        private final BufferedImage @NotNull [] images;
+        private final int from, to;
+
+        public RasterizeTask(@NotNull TextRenderProgram program, @Nullable BufferedImage face,
+                             double @NotNull [] scales, BufferedImage @NotNull [] images, int from, int to) {
+            this.program = program;
+            this.face = face;
+            this.scales = scales;
+            this.images = images;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            // every scale is worth a thread of its own
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new RasterizeTask(program, face, scales, images, from, mid),
+                        new RasterizeTask(program, face, scales, images, mid, to));
+                return;
+            }
+
+            images[from] = rasterize(program, face, scales[from]);
+        }
+    }
+}
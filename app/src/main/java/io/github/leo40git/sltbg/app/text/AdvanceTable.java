@@ -0,0 +1,115 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Font;
+import java.awt.font.TextAttribute;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// advance widths of one font, so text can be measured a character at a time without laying it out
+// BMP characters are cached in blocks that only get allocated once something in them is measured,
+//  supplementary characters are rare enough to just be measured every time
+public final class AdvanceTable {
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final @NotNull Font font;
+    // filled lazily, NaN until computed
+    // racy, but every thread computes the same value
+    private final @NotNull AtomicReferenceArray<float[]> blocks;
+    // kerning adjustments keyed by (first << 16 | second), null if the font doesn't kern
+    private final @Nullable ConcurrentHashMap<Integer, Float> kerningPairs;
+
+    public AdvanceTable(@NotNull Font font) {
+        this.font = font;
+        blocks = new AtomicReferenceArray<>(0x10000 >> BLOCK_SHIFT);
+        kerningPairs = TextAttribute.KERNING_ON.equals(font.getAttributes().get(TextAttribute.KERNING))
+                ? new ConcurrentHashMap<>() : null;
+    }
+
+    public boolean hasKerning() {
+        return kerningPairs != null;
+    }
+
+    public float getAdvance(char ch) {
+        final int blockIndex = ch >> BLOCK_SHIFT;
+        var block = blocks.get(blockIndex);
+        if (block == null) {
+            block = new float[BLOCK_SIZE];
+            Arrays.fill(block, Float.NaN);
+            if (!blocks.compareAndSet(blockIndex, null, block)) {
+                block = blocks.get(blockIndex);
+            }
+        }
+
+        float advance = block[ch & BLOCK_MASK];
+        if (Float.isNaN(advance)) {
+            advance = computeAdvance(new char[] { ch });
+            block[ch & BLOCK_MASK] = advance;
+        }
+        return advance;
+    }
+
+    public float getAdvance(int codePoint) {
+        if (Character.isBmpCodePoint(codePoint)) {
+            return getAdvance((char) codePoint);
+        } else {
+            return computeAdvance(Character.toChars(codePoint));
+        }
+    }
+
+    // adjustment to the advance of first when it's directly followed by second
+    public float getKerning(char first, char second) {
+        if (kerningPairs == null) {
+            return 0;
+        }
+
+        return kerningPairs.computeIfAbsent(first << 16 | second, key -> computeKerning(first, second));
+    }
+
+    // sums up the advances of everything in text between start (inclusive) and end (exclusive)
+    public float measure(@NotNull CharSequence text, int start, int end) {
+        float width = 0;
+        char prev = 0;
+        int i = start;
+        while (i < end) {
+            final char ch = text.charAt(i);
+            if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                width += getAdvance(Character.toCodePoint(ch, text.charAt(i + 1)));
+                prev = 0;
+                i += 2;
+                continue;
+            }
+
+            if (prev != 0) {
+                width += getKerning(prev, ch);
+            }
+            width += getAdvance(ch);
+            prev = ch;
+            i++;
+        }
+        return width;
+    }
+
+    private float computeAdvance(char @NotNull [] chars) {
+        return font.createGlyphVector(FontTable.LAYOUT_FRC, chars).getGlyphMetrics(0).getAdvanceX();
+    }
+
+    private float computeKerning(char first, char second) {
+        final var gv = font.layoutGlyphVector(FontTable.LAYOUT_FRC, new char[] { first, second }, 0, 2, Font.LAYOUT_LEFT_TO_RIGHT);
+        return (float) gv.getGlyphPosition(1).getX() - getAdvance(first);
+    }
+}
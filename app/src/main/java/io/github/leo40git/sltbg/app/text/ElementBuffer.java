@@ -0,0 +1,429 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Color;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.text.element.ColorControlElement;
+import io.github.leo40git.sltbg.app.text.element.Element;
+import io.github.leo40git.sltbg.app.text.element.ErrorElement;
+import io.github.leo40git.sltbg.app.text.element.EscapedTextElement;
+import io.github.leo40git.sltbg.app.text.element.IconControlElement;
+import io.github.leo40git.sltbg.app.text.element.InvisibleControlElement;
+import io.github.leo40git.sltbg.app.text.element.LineBreakElement;
+import io.github.leo40git.sltbg.app.text.element.SizeControlElement;
+import io.github.leo40git.sltbg.app.text.element.StyleControlElement;
+import io.github.leo40git.sltbg.app.text.element.TextElement;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+public final class ElementBuffer extends AbstractList<Element> implements RandomAccess {
+    public static final int TYPE_TEXT = 0;
+    public static final int TYPE_ESCAPED_TEXT = 1;
+    public static final int TYPE_LINE_BREAK = 2;
+    public static final int TYPE_COLOR = 3;
+    public static final int TYPE_SIZE = 4;
+    public static final int TYPE_STYLE_TOGGLE = 5;
+    public static final int TYPE_STYLE_RESET = 6;
+    public static final int TYPE_ICON = 7;
+    public static final int TYPE_INVISIBLE = 8;
+    public static final int TYPE_ERROR = 9;
+
+    private static final TextStyle[] STYLES = TextStyle.values();
+    private static final InvisibleControlElement.Type[] INVISIBLE_TYPES = InvisibleControlElement.Type.values();
+
+    public static final ElementBuffer EMPTY = new Builder(0).build();
+
+    private final int size;
+    // parallel arrays, one entry per element
+    private final int[] types, starts, lengths;
+    // palette index, size delta, style ordinal, invisible type ordinal or "is control element" flag (for errors), depending on type
+    private final int[] values;
+    // text contents, explicit color, icon name or error message, depending on type
+    private final Object[] payloads;
+    private final @NotNull SourcePositionIndex positionIndex;
+
+    private ElementBuffer(@NotNull Builder builder) {
+        size = builder.size;
+        types = Arrays.copyOf(builder.types, size);
+        starts = Arrays.copyOf(builder.starts, size);
+        lengths = Arrays.copyOf(builder.lengths, size);
+        values = Arrays.copyOf(builder.values, size);
+        payloads = Arrays.copyOf(builder.payloads, size);
+        positionIndex = builder.lineStartCount == 0
+                ? SourcePositionIndex.EMPTY
+                : new SourcePositionIndex(Arrays.copyOf(builder.lineStarts, builder.lineStartCount), builder.lineStartCount);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull Builder builder(@Range(from = 0, to = Integer.MAX_VALUE) int initialCapacity) {
+        return new Builder(initialCapacity);
+    }
+
+    public static @NotNull ElementBuffer copyOf(@NotNull List<Element> elems) {
+        if (elems instanceof ElementBuffer buf) {
+            return buf;
+        }
+
+        var builder = new Builder(elems.size());
+        for (var elem : elems) {
+            builder.add(elem);
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public @NotNull Element get(int index) {
+        checkIndex(index);
+        final int start = starts[index], length = lengths[index];
+        return switch (types[index]) {
+            case TYPE_TEXT -> new TextElement(start, length, (String) payloads[index]);
+            case TYPE_ESCAPED_TEXT -> new EscapedTextElement(start, length, (String) payloads[index]);
+            case TYPE_LINE_BREAK -> new LineBreakElement(start);
+            case TYPE_COLOR -> values[index] != ColorControlElement.NO_PALETTE_INDEX
+                    ? new ColorControlElement(start, length, values[index])
+                    : new ColorControlElement(start, length, (Color) payloads[index]);
+            case TYPE_SIZE -> new SizeControlElement(start, length, values[index]);
+            case TYPE_STYLE_TOGGLE -> new StyleControlElement.Toggle(start, length, STYLES[values[index]]);
+            case TYPE_STYLE_RESET -> new StyleControlElement.Reset(start, length);
+            case TYPE_ICON -> new IconControlElement(start, length, (String) payloads[index], values[index]);
+            case TYPE_INVISIBLE -> new InvisibleControlElement(start, length, INVISIBLE_TYPES[values[index]]);
+            case TYPE_ERROR -> new ErrorElement(start, length, values[index] != 0, (String) payloads[index]);
+            default -> throw new IllegalStateException("Unknown element type " + types[index]);
+        };
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index %d out of bounds for length %d".formatted(index, size));
+        }
+    }
+
+    public int getType(int index) {
+        checkIndex(index);
+        return types[index];
+    }
+
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getSourceStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    public @Range(from = 1, to = Integer.MAX_VALUE) int getSourceLength(int index) {
+        checkIndex(index);
+        return lengths[index];
+    }
+
+    public int getSourceEnd(int index) {
+        checkIndex(index);
+        return starts[index] + lengths[index];
+    }
+
+    public boolean isControlElement(int index) {
+        checkIndex(index);
+        return switch (types[index]) {
+            case TYPE_TEXT -> false;
+            case TYPE_ERROR -> values[index] != 0;
+            default -> true;
+        };
+    }
+
+    public @NotNull String getText(int index) {
+        checkType(index, TYPE_TEXT, TYPE_ESCAPED_TEXT);
+        return (String) payloads[index];
+    }
+
+    // palette colors are resolved against the current palette
+    public @NotNull Color getColor(int index) {
+        checkType(index, TYPE_COLOR);
+        if (values[index] != ColorControlElement.NO_PALETTE_INDEX) {
+            return GameAssets.getPaletteColor(values[index]);
+        } else {
+            return (Color) payloads[index];
+        }
+    }
+
+    public int getPaletteIndex(int index) {
+        checkType(index, TYPE_COLOR);
+        return values[index];
+    }
+
+    public int getSizeDelta(int index) {
+        checkType(index, TYPE_SIZE);
+        return values[index];
+    }
+
+    public @NotNull TextStyle getStyleTarget(int index) {
+        checkType(index, TYPE_STYLE_TOGGLE);
+        return STYLES[values[index]];
+    }
+
+    public @NotNull String getIconName(int index) {
+        checkType(index, TYPE_ICON);
+        return (String) payloads[index];
+    }
+
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getIconIndex(int index) {
+        checkType(index, TYPE_ICON);
+        return values[index];
+    }
+
+    public @NotNull InvisibleControlElement.Type getInvisibleType(int index) {
+        checkType(index, TYPE_INVISIBLE);
+        return INVISIBLE_TYPES[values[index]];
+    }
+
+    public @NotNull String getErrorMessage(int index) {
+        checkType(index, TYPE_ERROR);
+        return (String) payloads[index];
+    }
+
+    private void checkType(int index, int type) {
+        checkIndex(index);
+        if (types[index] != type) {
+            throw new IllegalArgumentException("Element at index %d has type %d, expected %d".formatted(index, types[index], type));
+        }
+    }
+
+    private void checkType(int index, int type1, int type2) {
+        checkIndex(index);
+        if (types[index] != type1 && types[index] != type2) {
+            throw new IllegalArgumentException("Element at index %d has type %d, expected %d or %d"
+                    .formatted(index, types[index], type1, type2));
+        }
+    }
+
+    // only knows about line breaks if this buffer was produced by TextParser
+    public @NotNull SourcePositionIndex getPositionIndex() {
+        return positionIndex;
+    }
+
+    // index of the first element that ends after the specified position
+    public int findFirstEndingAfter(int position) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] + lengths[mid] > position) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // index of the first element that starts at or after the specified position
+    public int findFirstStartingAt(int position) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] >= position) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    public static final class Builder implements ElementSink {
+        private int size;
+        private int[] types, starts, lengths, values;
+        private Object[] payloads;
+        private int[] lineStarts;
+        private int lineStartCount;
+
+        private Builder(@Range(from = 0, to = Integer.MAX_VALUE) int initialCapacity) {
+            types = new int[initialCapacity];
+            starts = new int[initialCapacity];
+            lengths = new int[initialCapacity];
+            values = new int[initialCapacity];
+            payloads = new Object[initialCapacity];
+            lineStarts = new int[Math.max(4, initialCapacity / 8)];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > types.length) {
+                int newCapacity = Math.max(capacity, Math.max(16, types.length + (types.length >> 1)));
+                types = Arrays.copyOf(types, newCapacity);
+                starts = Arrays.copyOf(starts, newCapacity);
+                lengths = Arrays.copyOf(lengths, newCapacity);
+                values = Arrays.copyOf(values, newCapacity);
+                payloads = Arrays.copyOf(payloads, newCapacity);
+            }
+        }
+
+        private @NotNull Builder add0(int type, int start, int length, int value, Object payload) {
+            ensureCapacity(size + 1);
+            types[size] = type;
+            starts[size] = start;
+            lengths[size] = length;
+            values[size] = value;
+            payloads[size] = payload;
+            size++;
+            return this;
+        }
+
+        public @NotNull Builder addText(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                                        @NotNull String contents) {
+            return add0(TYPE_TEXT, sourceStart, sourceLength, 0, contents);
+        }
+
+        public @NotNull Builder addEscapedText(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                                               @NotNull String contents) {
+            return add0(TYPE_ESCAPED_TEXT, sourceStart, sourceLength, 0, contents);
+        }
+
+        public @NotNull Builder addInvisible(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                                             @NotNull InvisibleControlElement.Type type) {
+            return add0(TYPE_INVISIBLE, sourceStart, sourceLength, type.ordinal(), null);
+        }
+
+        public @NotNull Builder addError(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                                         boolean isControlElement, @NotNull String message) {
+            return add0(TYPE_ERROR, sourceStart, sourceLength, isControlElement ? 1 : 0, message);
+        }
+
+        public @NotNull Builder addLineBreak(@Range(from = 0, to = Integer.MAX_VALUE) int sourcePosition) {
+            return add0(TYPE_LINE_BREAK, sourcePosition, 1, 0, null);
+        }
+
+        public @NotNull Builder add(@NotNull Element elem) {
+            final int start = elem.getSourceStart(), length = elem.getSourceLength();
+            if (elem instanceof EscapedTextElement e) {
+                return add0(TYPE_ESCAPED_TEXT, start, length, 0, e.getContents());
+            } else if (elem instanceof TextElement e) {
+                return add0(TYPE_TEXT, start, length, 0, e.getContents());
+            } else if (elem instanceof LineBreakElement) {
+                return add0(TYPE_LINE_BREAK, start, length, 0, null);
+            } else if (elem instanceof ColorControlElement e) {
+                return e.isPaletteColor()
+                        ? add0(TYPE_COLOR, start, length, e.getPaletteIndex(), null)
+                        : add0(TYPE_COLOR, start, length, ColorControlElement.NO_PALETTE_INDEX, e.getColor());
+            } else if (elem instanceof SizeControlElement e) {
+                return add0(TYPE_SIZE, start, length, e.getDelta(), null);
+            } else if (elem instanceof StyleControlElement.Toggle e) {
+                return add0(TYPE_STYLE_TOGGLE, start, length, e.getTarget().ordinal(), null);
+            } else if (elem instanceof StyleControlElement.Reset) {
+                return add0(TYPE_STYLE_RESET, start, length, 0, null);
+            } else if (elem instanceof IconControlElement e) {
+                return add0(TYPE_ICON, start, length, e.getIndex(), e.getName());
+            } else if (elem instanceof InvisibleControlElement e) {
+                return add0(TYPE_INVISIBLE, start, length, e.getType().ordinal(), null);
+            } else if (elem instanceof ErrorElement e) {
+                return add0(TYPE_ERROR, start, length, e.isControlElement() ? 1 : 0, e.getMessage());
+            } else {
+                throw new IllegalArgumentException("Unknown element type " + elem.getClass().getName());
+            }
+        }
+
+        @Override
+        public void element(@NotNull Element elem) {
+            add(elem);
+        }
+
+        @Override
+        public void text(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                         @NotNull CharSequence contents) {
+            addText(sourceStart, sourceLength, contents.toString());
+        }
+
+        @Override
+        public void escapedText(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                                @NotNull String contents) {
+            addEscapedText(sourceStart, sourceLength, contents);
+        }
+
+        @Override
+        public void lineBreak(@Range(from = 0, to = Integer.MAX_VALUE) int sourcePosition) {
+            addLineBreak(sourcePosition);
+        }
+
+        @Override
+        public void invisible(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                              @NotNull InvisibleControlElement.Type type) {
+            addInvisible(sourceStart, sourceLength, type);
+        }
+
+        @Override
+        public void error(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                          boolean isControlElement, @NotNull String message) {
+            addError(sourceStart, sourceLength, isControlElement, message);
+        }
+
+        @Override
+        public void lineStart(@Range(from = 1, to = Integer.MAX_VALUE) int sourcePosition) {
+            if (lineStartCount == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, Math.max(4, lineStartCount + (lineStartCount >> 1)));
+            }
+            lineStarts[lineStartCount++] = sourcePosition;
+        }
+
+        // copies line starts [from, to) of another index (see SourcePositionIndex.getLine), shifting them by delta
+        public @NotNull Builder addLineStarts(@NotNull SourcePositionIndex index, int from, int to, int delta) {
+            if (from < 0 || to > index.lineStartCount || from > to) {
+                throw new IndexOutOfBoundsException("Range [%d, %d) out of bounds for length %d".formatted(from, to, index.lineStartCount));
+            }
+
+            final int count = to - from;
+            if (lineStartCount + count > lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, Math.max(lineStartCount + count, lineStartCount + (lineStartCount >> 1)));
+            }
+            for (int i = 0; i < count; i++) {
+                lineStarts[lineStartCount + i] = index.lineStarts[from + i] + delta;
+            }
+            lineStartCount += count;
+            return this;
+        }
+
+        // copies elements [from, to) of another buffer, shifting their source positions by delta
+        public @NotNull Builder addRange(@NotNull ElementBuffer buf, int from, int to, int delta) {
+            if (from < 0 || to > buf.size || from > to) {
+                throw new IndexOutOfBoundsException("Range [%d, %d) out of bounds for length %d".formatted(from, to, buf.size));
+            }
+
+            final int count = to - from;
+            ensureCapacity(size + count);
+            System.arraycopy(buf.types, from, types, size, count);
+            System.arraycopy(buf.lengths, from, lengths, size, count);
+            System.arraycopy(buf.values, from, values, size, count);
+            System.arraycopy(buf.payloads, from, payloads, size, count);
+            if (delta == 0) {
+                System.arraycopy(buf.starts, from, starts, size, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    starts[size + i] = buf.starts[from + i] + delta;
+                }
+            }
+            size += count;
+            return this;
+        }
+
+        @Contract(" -> new")
+        public @NotNull ElementBuffer build() {
+            return new ElementBuffer(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import io.github.leo40git.sltbg.app.text.element.Element;
+import io.github.leo40git.sltbg.app.text.element.ErrorElement;
+import io.github.leo40git.sltbg.app.text.element.EscapedTextElement;
+import io.github.leo40git.sltbg.app.text.element.InvisibleControlElement;
+import io.github.leo40git.sltbg.app.text.element.LineBreakElement;
+import io.github.leo40git.sltbg.app.text.element.TextElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// receives elements from TextParser as soon as they're recognized, in source order
+// only element() has to be implemented - the other methods default to creating the matching Element,
+//  but can be overridden to avoid allocating them
+@FunctionalInterface
+public interface ElementSink {
+    void element(@NotNull Element elem);
+
+    // contents is only valid for the duration of the call, copy it if you need to keep it around
+    default void text(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                      @NotNull CharSequence contents) {
+        element(new TextElement(sourceStart, sourceLength, contents.toString()));
+    }
+
+    default void escapedText(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                             @NotNull String contents) {
+        element(new EscapedTextElement(sourceStart, sourceLength, contents));
+    }
+
+    default void lineBreak(@Range(from = 0, to = Integer.MAX_VALUE) int sourcePosition) {
+        element(new LineBreakElement(sourcePosition));
+    }
+
+    default void invisible(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                           @NotNull InvisibleControlElement.Type type) {
+        element(new InvisibleControlElement(sourceStart, sourceLength, type));
+    }
+
+    default void error(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                       boolean isControlElement, @NotNull String message) {
+        element(new ErrorElement(sourceStart, sourceLength, isControlElement, message));
+    }
+
+    // called with the start of every line after the first, including lines that follow an escaped line break
+    default void lineStart(@Range(from = 1, to = Integer.MAX_VALUE) int sourcePosition) { }
+}
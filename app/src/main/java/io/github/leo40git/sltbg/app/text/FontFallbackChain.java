@@ -0,0 +1,127 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Font;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// the game font, followed by fonts to try for anything it can't display
+// which font a code point resolves to is cached, so Font.canDisplay is only ever called once per code point and font:
+//  BMP code points in blocks that only get allocated once something in them is resolved,
+//  supplementary code points in a map, since only a handful of them ever show up
+public final class FontFallbackChain {
+    // font indices have to fit in a byte
+    public static final int MAX_FONTS = Byte.MAX_VALUE;
+
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final byte UNRESOLVED = -1;
+
+    private final @NotNull FontTable @NotNull [] tables;
+    // filled lazily, UNRESOLVED until resolved
+    // racy, but every thread resolves to the same font
+    private final @NotNull AtomicReferenceArray<byte[]> blocks;
+    private final @NotNull ConcurrentHashMap<Integer, Integer> supplementary;
+
+    public FontFallbackChain(@NotNull Font primary, @NotNull List<Font> fallbacks) {
+        if (fallbacks.size() >= MAX_FONTS) {
+            throw new IllegalArgumentException("Too many fallback fonts (must be less than %d, but was %d)"
+                    .formatted(MAX_FONTS, fallbacks.size()));
+        }
+
+        tables = new FontTable[1 + fallbacks.size()];
+        tables[0] = new FontTable(primary);
+        for (int i = 0; i < fallbacks.size(); i++) {
+            tables[i + 1] = new FontTable(fallbacks.get(i));
+        }
+        blocks = new AtomicReferenceArray<>(0x10000 >> BLOCK_SHIFT);
+        supplementary = new ConcurrentHashMap<>();
+    }
+
+    public int size() {
+        return tables.length;
+    }
+
+    public @NotNull FontTable getPrimary() {
+        return tables[0];
+    }
+
+    public @NotNull FontTable get(@Range(from = 0, to = MAX_FONTS - 1) int index) {
+        return tables[index];
+    }
+
+    // index of the first font in the chain that can display codePoint
+    // if none of them can, it's left to the primary font to draw its missing glyph box
+    public int resolve(int codePoint) {
+        if (tables.length == 1) {
+            return 0;
+        }
+
+        if (!Character.isBmpCodePoint(codePoint)) {
+            return supplementary.computeIfAbsent(codePoint, this::resolve0);
+        }
+
+        final int blockIndex = codePoint >> BLOCK_SHIFT;
+        var block = blocks.get(blockIndex);
+        if (block == null) {
+            block = new byte[BLOCK_SIZE];
+            Arrays.fill(block, UNRESOLVED);
+            if (!blocks.compareAndSet(blockIndex, null, block)) {
+                block = blocks.get(blockIndex);
+            }
+        }
+
+        int index = block[codePoint & BLOCK_MASK];
+        if (index == UNRESOLVED) {
+            index = resolve0(codePoint);
+            block[codePoint & BLOCK_MASK] = (byte) index;
+        }
+        return index;
+    }
+
+    // end of the span of text starting at start that resolves to the same font as the code point at start does
+    public int findSpanEnd(@NotNull CharSequence text, int start, int end) {
+        if (tables.length == 1) {
+            return end;
+        }
+
+        final int index = resolve(Character.codePointAt(text, start));
+        int i = start;
+        while (i < end) {
+            final int codePoint = Character.codePointAt(text, i);
+            if (resolve(codePoint) != index) {
+                break;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return i;
+    }
+
+    private int resolve0(int codePoint) {
+        // whitespace and control characters always go to the primary font
+        if (Character.isISOControl(codePoint) || Character.isWhitespace(codePoint)) {
+            return 0;
+        }
+
+        for (int i = 0; i < tables.length; i++) {
+            if (tables[i].getBaseFont().canDisplay(codePoint)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
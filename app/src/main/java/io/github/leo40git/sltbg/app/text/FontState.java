@@ -0,0 +1,76 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import org.jetbrains.annotations.NotNull;
+
+// the style and size text gets drawn with, tracked across style and size control elements
+final class FontState {
+    private final @NotNull FontTable fonts;
+    private int styleMask, sizeDelta;
+    private boolean needsUpdate;
+    private @NotNull FontTable.Entry font;
+
+    FontState(@NotNull FontTable fonts) {
+        this.fonts = fonts;
+        font = fonts.getDefault();
+    }
+
+    int getStyleMask() {
+        return styleMask;
+    }
+
+    int getSizeDelta() {
+        return sizeDelta;
+    }
+
+    @NotNull FontTable.Entry getFont() {
+        if (needsUpdate) {
+            font = fonts.get(styleMask, sizeDelta);
+            needsUpdate = false;
+        }
+        return font;
+    }
+
+    // returns false if the element isn't a style or size change
+    boolean apply(@NotNull ElementBuffer elems, int index) {
+        switch (elems.getType(index)) {
+            case ElementBuffer.TYPE_STYLE_TOGGLE -> {
+                styleMask ^= FontTable.getStyleBit(elems.getStyleTarget(index));
+                needsUpdate = true;
+            }
+            case ElementBuffer.TYPE_STYLE_RESET -> {
+                if (styleMask != 0) {
+                    needsUpdate = true;
+                }
+                styleMask = 0;
+            }
+            case ElementBuffer.TYPE_SIZE -> {
+                final int delta = elems.getSizeDelta(index);
+                if (delta == 0) {
+                    if (sizeDelta != 0) {
+                        needsUpdate = true;
+                    }
+                    sizeDelta = 0;
+                } else {
+                    final int newSizeDelta = FontTable.clampSizeDelta(sizeDelta + delta);
+                    if (newSizeDelta != sizeDelta) {
+                        needsUpdate = true;
+                    }
+                    sizeDelta = newSizeDelta;
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
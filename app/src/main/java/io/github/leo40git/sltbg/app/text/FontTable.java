@@ -0,0 +1,130 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import org.jetbrains.annotations.NotNull;
+
+// every (style, size delta) combination of the game font, derived once and kept around along with its metrics
+public final class FontTable {
+    public static final int STYLE_COMBINATIONS = 1 << TextStyle.COUNT;
+    // sizes below this would end up as 0pt or less, and sizes above this wouldn't fit in a textbox anyway
+    // the game stops changing the size past its limits, so text sizes saturate at these
+    public static final int MIN_SIZE_DELTA = -2;
+    public static final int MAX_SIZE_DELTA = 8;
+    private static final int SIZE_DELTA_COUNT = MAX_SIZE_DELTA - MIN_SIZE_DELTA + 1;
+    // styles that draw something besides the glyphs themselves
+    public static final int DECORATION_STYLES = 1 << TextStyle.UNDERLINE.ordinal() | 1 << TextStyle.STRIKETHROUGH.ordinal();
+    // how far past the end of its advance a run with decorations can reach, since their ends get antialiased
+    public static final float DECORATION_ALLOWANCE = 1;
+    // text is laid out as if drawn onto an untransformed Graphics2D with TextRenderer's hints
+    public static final FontRenderContext LAYOUT_FRC = new FontRenderContext(null, true, true);
+
+    private final @NotNull Font baseFont;
+    // filled lazily, index is (sizeDelta - MIN_SIZE_DELTA) * STYLE_COMBINATIONS + styleMask
+    private final @NotNull AtomicReferenceArray<Entry> entries;
+
+    public FontTable(@NotNull Font baseFont) {
+        this.baseFont = baseFont;
+        entries = new AtomicReferenceArray<>(SIZE_DELTA_COUNT * STYLE_COMBINATIONS);
+    }
+
+    public @NotNull Font getBaseFont() {
+        return baseFont;
+    }
+
+    public static int getStyleBit(@NotNull TextStyle style) {
+        return 1 << style.ordinal();
+    }
+
+    public static float getFontSize(int sizeDelta) {
+        // TODO make this accurate
+        return GameAssets.DEFAULT_FONT_SIZE + sizeDelta * 8;
+    }
+
+    public static int clampSizeDelta(int sizeDelta) {
+        return Math.max(MIN_SIZE_DELTA, Math.min(sizeDelta, MAX_SIZE_DELTA));
+    }
+
+    public @NotNull Entry getDefault() {
+        return get(0, 0);
+    }
+
+    public @NotNull Entry get(int styleMask, int sizeDelta) {
+        if (styleMask < 0 || styleMask >= STYLE_COMBINATIONS) {
+            throw new IllegalArgumentException("Invalid style mask 0x%X".formatted(styleMask));
+        }
+
+        sizeDelta = clampSizeDelta(sizeDelta);
+        final int index = (sizeDelta - MIN_SIZE_DELTA) * STYLE_COMBINATIONS + styleMask;
+        var entry = entries.get(index);
+        if (entry == null) {
+            entry = createEntry(styleMask, sizeDelta);
+            if (!entries.compareAndSet(index, null, entry)) {
+                // someone else beat us to it
+                entry = entries.get(index);
+            }
+        }
+        return entry;
+    }
+
+    private @NotNull Entry createEntry(int styleMask, int sizeDelta) {
+        var map = new HashMap<TextAttribute, Object>(5);
+        map.put(TextAttribute.SIZE, getFontSize(sizeDelta));
+
+        if ((styleMask & getStyleBit(TextStyle.BOLD)) != 0) {
+            map.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+        }
+
+        if ((styleMask & getStyleBit(TextStyle.ITALIC)) != 0) {
+            map.put(TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE);
+        }
+
+        if ((styleMask & getStyleBit(TextStyle.UNDERLINE)) != 0) {
+            map.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+        }
+
+        if ((styleMask & getStyleBit(TextStyle.STRIKETHROUGH)) != 0) {
+            map.put(TextAttribute.STRIKETHROUGH, TextAttribute.STRIKETHROUGH_ON);
+        }
+
+        final var font = baseFont.deriveFont(map);
+        final var metrics = getMetrics(font);
+        final var advances = new AdvanceTable(font);
+        return new Entry(font, metrics, metrics.getMaxAscent(), advances, new GlyphAtlas(font, advances));
+    }
+
+    private static @NotNull FontMetrics getMetrics(@NotNull Font font) {
+        // metrics depend on these hints, so they need to match what TextRenderer uses
+        var scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        var g = scratch.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            return g.getFontMetrics(font);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    public record Entry(@NotNull Font font, @NotNull FontMetrics metrics, int maxAscent,
+                        @NotNull AdvanceTable advances, @NotNull GlyphAtlas glyphs) { }
+}
@@ -0,0 +1,267 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.leo40git.sltbg.swing.RenderQuality;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+// pre-rasterized glyph tiles for one font, so plain text can be blitted instead of filling its outline every time
+// only covers Latin characters (no combining marks, no complex shaping), everything else goes through TextLayout
+// tiles are rasterized separately for each render quality, so blitted text looks just like filled outlines in both
+public final class GlyphAtlas {
+    public static final int MAX_CHAR = 0x300;
+    // glyphs are rasterized at this many horizontal sub-pixel positions
+    private static final int SUBPIXEL_STEPS = 4;
+    // maximum number of differently colored tiles kept per glyph
+    private static final int MAX_TILE_COLORS = 8;
+
+    private static final FontRenderContext FRC = FontTable.LAYOUT_FRC;
+    private static final Glyph UNSUPPORTED = new Glyph(0, null, 0, 0, 0, 0);
+
+    private final @NotNull Font font;
+    private final @NotNull AdvanceTable advanceTable;
+    // tiles can't be kerned, so fonts that kern go through the fallback for everything
+    private final boolean enabled;
+    // one array per render quality, both created and filled lazily
+    // index is ch * SUBPIXEL_STEPS + sub-pixel step
+    private final @NotNull AtomicReferenceArray<AtomicReferenceArray<Glyph>> glyphs;
+
+    public GlyphAtlas(@NotNull Font font, @NotNull AdvanceTable advanceTable) {
+        this.font = font;
+        this.advanceTable = advanceTable;
+        enabled = !advanceTable.hasKerning();
+        glyphs = new AtomicReferenceArray<>(RenderQuality.values().length);
+    }
+
+    // checks if runs can be blitted onto g at all
+    public static boolean canDrawOnto(@NotNull Graphics2D g) {
+        if (!(g.getComposite() instanceof AlphaComposite ac) || ac.getRule() != AlphaComposite.SRC_OVER) {
+            return false;
+        }
+
+        // tiles are rasterized on the pixel grid, so anything but whole pixel translations would put them off it
+        final var tx = g.getTransform();
+        return (tx.getType() & ~AffineTransform.TYPE_TRANSLATION) == 0
+                && tx.getTranslateX() == Math.rint(tx.getTranslateX())
+                && tx.getTranslateY() == Math.rint(tx.getTranslateY());
+    }
+
+    // draws text in the current color with its baseline starting at (x, baselineY), returns the advance
+    // the shadow (if any) goes 1px below and to the right, and is drawn for the whole run first,
+    //  just like filling the run's outline twice would
+    // quality has to match the hints g was set up with
+    public float drawRun(@NotNull Graphics2D g, @NotNull CharSequence text, int x, int baselineY, @Nullable Color shadowColor,
+                         @NotNull RenderQuality quality) {
+        final var glyphs = getGlyphs(quality);
+        final var color = g.getColor();
+        if (shadowColor != null) {
+            drawGlyphs(g, glyphs, quality, text, x + 1, baselineY + 1, shadowColor);
+        }
+        final float advance = drawGlyphs(g, glyphs, quality, text, x, baselineY, color);
+        g.setColor(color);
+        return advance;
+    }
+
+    private float drawGlyphs(@NotNull Graphics2D g, @NotNull AtomicReferenceArray<Glyph> glyphs, @NotNull RenderQuality quality,
+                             @NotNull CharSequence text, int x, int baselineY, @NotNull Color color) {
+        final int argb = color.getRGB();
+        final int length = text.length();
+        float pen = 0;
+        int i = 0;
+        while (i < length) {
+            final char ch = text.charAt(i);
+            final var glyph = getGlyph(glyphs, quality, ch, 0);
+            if (glyph == null) {
+                // find the end of the unsupported span, then let TextLayout deal with it
+                int end = i + 1;
+                while (end < length && getGlyph(glyphs, quality, text.charAt(end), 0) == null) {
+                    end++;
+                }
+                pen += drawFallback(g, text.subSequence(i, end).toString(), x + pen, baselineY, color);
+                i = end;
+                continue;
+            }
+
+            final float penX = x + pen;
+            int pixelX = (int) Math.floor(penX);
+            int step = Math.round((penX - pixelX) * SUBPIXEL_STEPS);
+            if (step == SUBPIXEL_STEPS) {
+                pixelX++;
+                step = 0;
+            }
+
+            final var positioned = step == 0 ? glyph : getGlyph(glyphs, quality, ch, step);
+            assert positioned != null;
+            final var tile = positioned.getTile(argb);
+            if (tile != null) {
+                g.drawImage(tile, pixelX + positioned.offsetX, baselineY + positioned.offsetY, null);
+            }
+
+            pen += glyph.advance;
+            i++;
+        }
+        return pen;
+    }
+
+    private float drawFallback(@NotNull Graphics2D g, @NotNull String text, float x, int baselineY, @NotNull Color color) {
+        var outline = OutlineCache.shared().get(text, font, FRC);
+        g.setColor(color);
+        outline.fill(g, x, baselineY);
+        return outline.advance();
+    }
+
+    private @NotNull AtomicReferenceArray<Glyph> getGlyphs(@NotNull RenderQuality quality) {
+        var qualityGlyphs = glyphs.get(quality.ordinal());
+        if (qualityGlyphs == null) {
+            qualityGlyphs = new AtomicReferenceArray<>(MAX_CHAR * SUBPIXEL_STEPS);
+            if (!glyphs.compareAndSet(quality.ordinal(), null, qualityGlyphs)) {
+                qualityGlyphs = glyphs.get(quality.ordinal());
+            }
+        }
+        return qualityGlyphs;
+    }
+
+    private @Nullable Glyph getGlyph(@NotNull AtomicReferenceArray<Glyph> glyphs, @NotNull RenderQuality quality,
+                                     char ch, int step) {
+        if (!enabled || ch >= MAX_CHAR) {
+            return null;
+        }
+
+        final int index = ch * SUBPIXEL_STEPS + step;
+        var glyph = glyphs.get(index);
+        if (glyph == null) {
+            glyph = createGlyph(quality, ch, step);
+            if (!glyphs.compareAndSet(index, null, glyph)) {
+                glyph = glyphs.get(index);
+            }
+        }
+        return glyph == UNSUPPORTED ? null : glyph;
+    }
+
+    private @NotNull Glyph createGlyph(@NotNull RenderQuality quality, char ch, int step) {
+        if (Character.isISOControl(ch) || !font.canDisplay(ch)) {
+            return UNSUPPORTED;
+        }
+
+        final var gv = font.createGlyphVector(FRC, new char[] { ch });
+        final float advance = advanceTable.getAdvance(ch);
+        final var outline = gv.getGlyphOutline(0, (float) step / SUBPIXEL_STEPS, 0);
+        final var bounds = outline.getBounds();
+        if (bounds.isEmpty()) {
+            // whitespace
+            return new Glyph(advance, null, 0, 0, 0, 0);
+        }
+
+        // 1px of padding for antialiasing
+        final int offsetX = bounds.x - 1, offsetY = bounds.y - 1;
+        final int width = bounds.width + 2, height = bounds.height + 2;
+
+        final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final var g = image.createGraphics();
+        try {
+            // same hints TextRenderer uses, so coverage comes out the same as filling the whole run's outline
+            quality.applyTextHints(g);
+            g.setColor(Color.WHITE);
+            g.translate(-offsetX, -offsetY);
+            g.fill(outline);
+        } finally {
+            g.dispose();
+        }
+
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final byte[] coverage = new byte[width * height];
+        for (int i = 0; i < coverage.length; i++) {
+            coverage[i] = (byte) (pixels[i] >>> 24);
+        }
+
+        return new Glyph(advance, coverage, offsetX, offsetY, width, height);
+    }
+
+    private static final class Glyph {
+        public final float advance;
+        // null for glyphs that don't draw anything
+        private final byte @Nullable [] coverage;
+        public final int offsetX, offsetY;
+        private final int width, height;
+        // copy-on-write, newest last
+        private volatile Tile @NotNull [] tiles;
+
+        public Glyph(float advance, byte @Nullable [] coverage, int offsetX, int offsetY, int width, int height) {
+            this.advance = advance;
+            this.coverage = coverage;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.width = width;
+            this.height = height;
+            tiles = new Tile[0];
+        }
+
+        public @Nullable BufferedImage getTile(int argb) {
+            if (coverage == null) {
+                return null;
+            }
+
+            for (var tile : tiles) {
+                if (tile.argb == argb) {
+                    return tile.image;
+                }
+            }
+
+            synchronized (this) {
+                var tiles = this.tiles;
+                for (var tile : tiles) {
+                    if (tile.argb == argb) {
+                        return tile.image;
+                    }
+                }
+
+                final var tile = new Tile(argb, colorize(argb));
+                if (tiles.length < MAX_TILE_COLORS) {
+                    tiles = Arrays.copyOf(tiles, tiles.length + 1);
+                } else {
+                    // evict the oldest color
+                    tiles = Arrays.copyOfRange(tiles, 1, tiles.length + 1);
+                }
+                tiles[tiles.length - 1] = tile;
+                this.tiles = tiles;
+                return tile.image;
+            }
+        }
+
+        private @NotNull BufferedImage colorize(int argb) {
+            assert coverage != null;
+            final int a = argb >>> 24, r = (argb >> 16) & 0xFF, g = (argb >> 8) & 0xFF, b = argb & 0xFF;
+
+            final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < coverage.length; i++) {
+                final int pa = (coverage[i] & 0xFF) * a / 255;
+                if (pa != 0) {
+                    pixels[i] = pa << 24 | (r * pa / 255) << 16 | (g * pa / 255) << 8 | (b * pa / 255);
+                }
+            }
+            return image;
+        }
+    }
+
+    private record Tile(int argb, @NotNull BufferedImage image) { }
+}
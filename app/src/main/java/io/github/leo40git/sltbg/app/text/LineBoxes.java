@@ -0,0 +1,109 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+// line boxes collected during layout, shared by TextLayoutPlan and TextMeasurement
+// only ever mutated while laying out, the result of trimmed() is never touched again
+final class LineBoxes {
+    private int count;
+    private int[] tops, heights, widths, sourceStarts;
+    private int top, width, sourceStart;
+
+    LineBoxes() {
+        tops = new int[4];
+        heights = new int[4];
+        widths = new int[4];
+        sourceStarts = new int[4];
+    }
+
+    private LineBoxes(@NotNull LineBoxes other) {
+        count = other.count;
+        tops = Arrays.copyOf(other.tops, count);
+        heights = Arrays.copyOf(other.heights, count);
+        widths = Arrays.copyOf(other.widths, count);
+        sourceStarts = Arrays.copyOf(other.sourceStarts, count);
+        top = other.top;
+    }
+
+    // widens the current line to include everything up to x
+    void extend(float x) {
+        width = Math.max(width, (int) Math.ceil(x));
+    }
+
+    void endLine(int height, int nextSourceStart) {
+        if (count == tops.length) {
+            int newCapacity = count + (count >> 1);
+            tops = Arrays.copyOf(tops, newCapacity);
+            heights = Arrays.copyOf(heights, newCapacity);
+            widths = Arrays.copyOf(widths, newCapacity);
+            sourceStarts = Arrays.copyOf(sourceStarts, newCapacity);
+        }
+
+        tops[count] = top;
+        heights[count] = height;
+        widths[count] = width;
+        sourceStarts[count] = sourceStart;
+        count++;
+
+        top += height;
+        width = 0;
+        sourceStart = nextSourceStart;
+    }
+
+    @NotNull LineBoxes trimmed() {
+        return new LineBoxes(this);
+    }
+
+    int count() {
+        return count;
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= count) {
+            throw new IndexOutOfBoundsException("Line %d out of bounds for line count %d".formatted(line, count));
+        }
+    }
+
+    int getTop(int line) {
+        checkLine(line);
+        return tops[line];
+    }
+
+    int getHeight(int line) {
+        checkLine(line);
+        return heights[line];
+    }
+
+    int getWidth(int line) {
+        checkLine(line);
+        return widths[line];
+    }
+
+    int getSourceStart(int line) {
+        checkLine(line);
+        return sourceStarts[line];
+    }
+
+    int getMaxWidth() {
+        int max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, widths[i]);
+        }
+        return max;
+    }
+
+    int getTotalHeight() {
+        return top;
+    }
+}
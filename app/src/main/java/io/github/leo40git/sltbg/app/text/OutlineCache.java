@@ -0,0 +1,98 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// keeps the outlines of recently drawn text runs, so redrawing the same textbox doesn't need new TextLayouts
+public final class OutlineCache {
+    private static final OutlineCache SHARED = new OutlineCache();
+
+    private final @NotNull Cache<Key, Outline> cache;
+
+    // cacheBuilder must be bounded by maximumWeight, entries are weighed by the number of segments in their outline
+    public OutlineCache(@NotNull Caffeine<Object, Object> cacheBuilder) {
+        cache = cacheBuilder
+                .weigher(OutlineCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    public OutlineCache() {
+        this(createDefaultCacheBuilder());
+    }
+
+    public static @NotNull OutlineCache shared() {
+        return SHARED;
+    }
+
+    public @NotNull Outline get(@NotNull String text, @NotNull Font font, @NotNull FontRenderContext frc) {
+        return cache.get(new Key(text, font, frc), OutlineCache::createOutline);
+    }
+
+    public @NotNull CacheStats stats() {
+        return cache.stats();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static @NotNull Outline createOutline(@NotNull Key key) {
+        var layout = new TextLayout(key.text(), key.font(), key.frc());
+        var shape = layout.getOutline(null);
+
+        int segmentCount = 0;
+        for (var it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+            segmentCount++;
+        }
+
+        return new Outline(shape, layout.getAdvance(), segmentCount);
+    }
+
+    private static int weigh(@NotNull Key key, @NotNull Outline outline) {
+        // +1 so that whitespace-only runs still count for something
+        return outline.segmentCount() + 1;
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder(@Range(from = 1, to = Long.MAX_VALUE) long maximumSegments) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumSegments);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder() {
+        return createDefaultCacheBuilder(256 * 1024);
+    }
+
+    // shape is relative to the start of the run's baseline, and must not be modified
+    public record Outline(@NotNull Shape shape, float advance, int segmentCount) {
+        public void fill(@NotNull Graphics2D g, float x, float y) {
+            var oldTx = g.getTransform();
+            g.translate(x, y);
+            g.fill(shape);
+            g.setTransform(oldTx);
+        }
+    }
+
+    private record Key(@NotNull String text, @NotNull Font font, @NotNull FontRenderContext frc) { }
+}
@@ -0,0 +1,78 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// memoizes TextParser.parse for sources that come up over and over (catchphrases, prompts, etc.)
+// the returned buffers are immutable and shared between all callers
+// icons get resolved while parsing, so this needs to be invalidated if the game assets are reloaded
+public final class ParseCache {
+    private final @NotNull Cache<Key, ElementBuffer> cache;
+
+    // cacheBuilder must be bounded by maximumWeight, entries are weighed by source length
+    public ParseCache(@NotNull Caffeine<Object, Object> cacheBuilder) {
+        cache = cacheBuilder
+                .weigher(ParseCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    public ParseCache(@Range(from = 1, to = Long.MAX_VALUE) long maximumSourceChars) {
+        this(createDefaultCacheBuilder(maximumSourceChars));
+    }
+
+    public ParseCache() {
+        this(createDefaultCacheBuilder());
+    }
+
+    public @NotNull ElementBuffer parse(@NotNull CharSequence source, boolean preserveInvisible) {
+        return cache.get(new Key(source.toString(), preserveInvisible), ParseCache::load);
+    }
+
+    public @NotNull CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static @NotNull ElementBuffer load(@NotNull Key key) {
+        return TextParser.parse(key.source(), key.preserveInvisible());
+    }
+
+    private static int weigh(@NotNull Key key, @NotNull ElementBuffer elems) {
+        // +1 so that empty sources still count for something
+        return key.source().length() + 1;
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder(@Range(from = 1, to = Long.MAX_VALUE) long maximumSourceChars) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumSourceChars);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder() {
+        return createDefaultCacheBuilder(1024 * 1024); // ~2 MiB worth of source text
+    }
+
+    private record Key(@NotNull String source, boolean preserveInvisible) { }
+}
@@ -0,0 +1,83 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// memoizes parsing, laying out and compiling sources, for text that gets rendered over and over
+//  (animation frames, batch exports, etc.)
+// programs have palette colors and fonts baked in, so this needs to be invalidated if the game assets are reloaded
+public final class RenderProgramCache {
+    private final @NotNull Cache<Key, TextRenderProgram> cache;
+
+    // cacheBuilder must be bounded by maximumWeight, entries are weighed by source length
+    public RenderProgramCache(@NotNull Caffeine<Object, Object> cacheBuilder) {
+        cache = cacheBuilder
+                .weigher(RenderProgramCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    public RenderProgramCache(@Range(from = 1, to = Long.MAX_VALUE) long maximumSourceChars) {
+        this(createDefaultCacheBuilder(maximumSourceChars));
+    }
+
+    public RenderProgramCache() {
+        this(createDefaultCacheBuilder());
+    }
+
+    public @NotNull TextRenderProgram get(@NotNull CharSequence source, int wrapWidth) {
+        return cache.get(new Key(source.toString(), wrapWidth), RenderProgramCache::load);
+    }
+
+    public @NotNull TextRenderProgram get(@NotNull CharSequence source) {
+        return get(source, TextRenderer.NO_WRAP);
+    }
+
+    public @NotNull CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static @NotNull TextRenderProgram load(@NotNull Key key) {
+        final var elems = TextParser.parse(key.source(), false);
+        return TextRenderProgram.compile(TextRenderer.layout(elems, key.wrapWidth()));
+    }
+
+    private static int weigh(@NotNull Key key, @NotNull TextRenderProgram program) {
+        // +1 so that empty sources still count for something
+        return key.source().length() + 1;
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder(@Range(from = 1, to = Long.MAX_VALUE) long maximumSourceChars) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumSourceChars);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder() {
+        return createDefaultCacheBuilder(256 * 1024);
+    }
+
+    private record Key(@NotNull String source, int wrapWidth) { }
+}
@@ -0,0 +1,83 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// maps source offsets to line/column pairs (both 0-based), using the line starts recorded by TextParser
+// unlike LineBreakElements, this also accounts for escaped line breaks
+public final class SourcePositionIndex {
+    public static final SourcePositionIndex EMPTY = new SourcePositionIndex(new int[0], 0);
+
+    // starts of every line but the first (which always starts at 0), in ascending order
+    final int[] lineStarts;
+    final int lineStartCount;
+
+    SourcePositionIndex(int @NotNull [] lineStarts, int lineStartCount) {
+        this.lineStarts = lineStarts;
+        this.lineStartCount = lineStartCount;
+    }
+
+    public static @NotNull SourcePositionIndex of(@NotNull CharSequence source) {
+        int[] lineStarts = new int[16];
+        int count = 0;
+        for (int i = 0, length = source.length(); i < length; i++) {
+            if (source.charAt(i) == '\n') {
+                if (count == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, count + (count >> 1));
+                }
+                lineStarts[count++] = i + 1;
+            }
+        }
+        return new SourcePositionIndex(Arrays.copyOf(lineStarts, count), count);
+    }
+
+    public @Range(from = 1, to = Integer.MAX_VALUE) int getLineCount() {
+        return lineStartCount + 1;
+    }
+
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getLineStart(@Range(from = 0, to = Integer.MAX_VALUE) int line) {
+        if (line < 0 || line > lineStartCount) {
+            throw new IndexOutOfBoundsException("Line %d out of bounds for line count %d".formatted(line, lineStartCount + 1));
+        }
+        return line == 0 ? 0 : lineStarts[line - 1];
+    }
+
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getLine(@Range(from = 0, to = Integer.MAX_VALUE) int offset) {
+        if (offset < 0) {
+            throw new IndexOutOfBoundsException("Negative offset: " + offset);
+        }
+
+        // number of line starts at or before offset
+        int low = 0, high = lineStartCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getColumn(@Range(from = 0, to = Integer.MAX_VALUE) int offset) {
+        return offset - getLineStart(getLine(offset));
+    }
+
+    // 1-based, for showing to humans
+    public @NotNull String describe(@Range(from = 0, to = Integer.MAX_VALUE) int offset) {
+        final int line = getLine(offset);
+        return "line %d, column %d".formatted(line + 1, offset - getLineStart(line) + 1);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+public record TextEdit(@Range(from = 0, to = Integer.MAX_VALUE) int offset,
+                       @Range(from = 0, to = Integer.MAX_VALUE) int removedLength,
+                       @NotNull String insertedText) {
+    public TextEdit {
+        if (offset < 0) {
+            throw new IllegalArgumentException("offset must be non-negative, but was %d".formatted(offset));
+        }
+        if (removedLength < 0) {
+            throw new IllegalArgumentException("removedLength must be non-negative, but was %d".formatted(removedLength));
+        }
+    }
+
+    public static @NotNull TextEdit insert(@Range(from = 0, to = Integer.MAX_VALUE) int offset, @NotNull String text) {
+        return new TextEdit(offset, 0, text);
+    }
+
+    public static @NotNull TextEdit remove(@Range(from = 0, to = Integer.MAX_VALUE) int offset, @Range(from = 0, to = Integer.MAX_VALUE) int length) {
+        return new TextEdit(offset, length, "");
+    }
+
+    public int getInsertedLength() {
+        return insertedText.length();
+    }
+
+    // end of the damaged span, in the coordinates of the source *before* the edit
+    public int getOldEnd() {
+        return offset + removedLength;
+    }
+
+    // end of the damaged span, in the coordinates of the source *after* the edit
+    public int getNewEnd() {
+        return offset + insertedText.length();
+    }
+
+    public int getDelta() {
+        return insertedText.length() - removedLength;
+    }
+
+    public @NotNull String apply(@NotNull String source) {
+        return source.substring(0, offset) + insertedText + source.substring(offset + removedLength);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// positioned runs and icons, plus the line boxes they sit in, as produced by TextRenderer.layout
+// everything is relative to the top-left corner the plan gets rendered at,
+//  so a plan can be measured without rendering it, or rendered any number of times (and onto any Graphics2D)
+public final class TextLayoutPlan {
+    public static final int KIND_RUN = 0;
+    public static final int KIND_ICON = 1;
+
+    private final int size;
+    // for runs, y is the baseline, for icons it's the top edge
+    private final int[] kinds, xs, ys;
+    // style mask for runs, icon index for icons
+    private final int[] values;
+    private final float[] advances;
+    private final String[] texts;
+    private final FontTable.Entry[] fonts;
+    private final Color[] colors;
+
+    private final @NotNull LineBoxes lines;
+    private final int width;
+
+    private TextLayoutPlan(@NotNull Builder builder, @NotNull LineBoxes lines) {
+        size = builder.size;
+        kinds = Arrays.copyOf(builder.kinds, size);
+        xs = Arrays.copyOf(builder.xs, size);
+        ys = Arrays.copyOf(builder.ys, size);
+        values = Arrays.copyOf(builder.values, size);
+        advances = Arrays.copyOf(builder.advances, size);
+        texts = Arrays.copyOf(builder.texts, size);
+        fonts = Arrays.copyOf(builder.fonts, size);
+        colors = Arrays.copyOf(builder.colors, size);
+
+        this.lines = lines.trimmed();
+        width = this.lines.getMaxWidth();
+    }
+
+    @Contract("_ -> new")
+    static @NotNull Builder builder(@Range(from = 0, to = Integer.MAX_VALUE) int initialCapacity) {
+        return new Builder(initialCapacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index %d out of bounds for length %d".formatted(index, size));
+        }
+    }
+
+    private void checkKind(int index, int kind) {
+        checkIndex(index);
+        if (kinds[index] != kind) {
+            throw new IllegalArgumentException("Item at index %d is of kind %d, not %d".formatted(index, kinds[index], kind));
+        }
+    }
+
+    public int getKind(int index) {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    public int getX(int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+
+    public int getY(int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+
+    public float getAdvance(int index) {
+        checkIndex(index);
+        return advances[index];
+    }
+
+    public @NotNull String getText(int index) {
+        checkKind(index, KIND_RUN);
+        return texts[index];
+    }
+
+    public @NotNull FontTable.Entry getFont(int index) {
+        checkKind(index, KIND_RUN);
+        return fonts[index];
+    }
+
+    public int getStyleMask(int index) {
+        checkKind(index, KIND_RUN);
+        return values[index];
+    }
+
+    public @NotNull Color getColor(int index) {
+        checkKind(index, KIND_RUN);
+        return colors[index];
+    }
+
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getIconIndex(int index) {
+        checkKind(index, KIND_ICON);
+        return values[index];
+    }
+
+    public int getLineCount() {
+        return lines.count();
+    }
+
+    public int getLineTop(int line) {
+        return lines.getTop(line);
+    }
+
+    public int getLineHeight(int line) {
+        return lines.getHeight(line);
+    }
+
+    public int getLineWidth(int line) {
+        return lines.getWidth(line);
+    }
+
+    // source position of the first character on the line (if the elements came from a parser)
+    public int getLineSourceStart(int line) {
+        return lines.getSourceStart(line);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return lines.getTotalHeight();
+    }
+
+    static final class Builder {
+        private int size;
+        private int[] kinds, xs, ys, values;
+        private float[] advances;
+        private String[] texts;
+        private FontTable.Entry[] fonts;
+        private Color[] colors;
+
+        private Builder(@Range(from = 0, to = Integer.MAX_VALUE) int initialCapacity) {
+            kinds = new int[initialCapacity];
+            xs = new int[initialCapacity];
+            ys = new int[initialCapacity];
+            values = new int[initialCapacity];
+            advances = new float[initialCapacity];
+            texts = new String[initialCapacity];
+            fonts = new FontTable.Entry[initialCapacity];
+            colors = new Color[initialCapacity];
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > kinds.length) {
+                int newCapacity = Math.max(capacity, Math.max(16, kinds.length + (kinds.length >> 1)));
+                kinds = Arrays.copyOf(kinds, newCapacity);
+                xs = Arrays.copyOf(xs, newCapacity);
+                ys = Arrays.copyOf(ys, newCapacity);
+                values = Arrays.copyOf(values, newCapacity);
+                advances = Arrays.copyOf(advances, newCapacity);
+                texts = Arrays.copyOf(texts, newCapacity);
+                fonts = Arrays.copyOf(fonts, newCapacity);
+                colors = Arrays.copyOf(colors, newCapacity);
+            }
+        }
+
+        private void add0(int kind, int x, int y, int value, float advance, String text, FontTable.Entry font, Color color) {
+            ensureCapacity(size + 1);
+            kinds[size] = kind;
+            xs[size] = x;
+            ys[size] = y;
+            values[size] = value;
+            advances[size] = advance;
+            texts[size] = text;
+            fonts[size] = font;
+            colors[size] = color;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // moves everything from the given item onwards down by dy
+        public void offsetY(int from, int dy) {
+            for (int i = from; i < size; i++) {
+                ys[i] += dy;
+            }
+        }
+
+        public void addRun(int x, int baselineY, @NotNull String text, @NotNull FontTable.Entry font, int styleMask, @NotNull Color color, float advance) {
+            add0(KIND_RUN, x, baselineY, styleMask, advance, text, font, color);
+        }
+
+        public void addIcon(int x, int y, @Range(from = 0, to = Integer.MAX_VALUE) int index) {
+            add0(KIND_ICON, x, y, index, GameAssets.ICON_SIZE, null, null, null);
+        }
+
+        public @NotNull TextLayoutPlan build(@NotNull LineBoxes lines) {
+            return new TextLayoutPlan(this, lines);
+        }
+    }
+}
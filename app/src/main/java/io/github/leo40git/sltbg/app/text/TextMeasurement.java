@@ -0,0 +1,74 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import org.jetbrains.annotations.NotNull;
+
+// line boxes of laid out text, checked against the space available for it in a textbox
+public final class TextMeasurement {
+    private final @NotNull LineBoxes lines;
+    private final int width, maxWidth, maxHeight;
+
+    TextMeasurement(@NotNull LineBoxes lines, int maxWidth, int maxHeight) {
+        this.lines = lines.trimmed();
+        width = this.lines.getMaxWidth();
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    public int getLineCount() {
+        return lines.count();
+    }
+
+    public int getLineTop(int line) {
+        return lines.getTop(line);
+    }
+
+    public int getLineHeight(int line) {
+        return lines.getHeight(line);
+    }
+
+    public int getLineWidth(int line) {
+        return lines.getWidth(line);
+    }
+
+    // source position of the first character on the line (if the elements came from a parser)
+    public int getLineSourceStart(int line) {
+        return lines.getSourceStart(line);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return lines.getTotalHeight();
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public boolean overflows() {
+        return width > maxWidth || getHeight() > maxHeight;
+    }
+
+    public boolean isLineTooWide(int line) {
+        return lines.getWidth(line) > maxWidth;
+    }
+
+    public boolean isLineCutOff(int line) {
+        return lines.getTop(line) + lines.getHeight(line) > maxHeight;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.jetbrains.annotations.NotNull;
+
+// checks the pages of a script for text that doesn't fit in its textbox, without rendering anything
+public final class TextOverflowLinter {
+    private TextOverflowLinter() {
+        throw new UnsupportedOperationException("TextOverflowLinter only contains static declarations.");
+    }
+
+    private static final Overflow[] NO_OVERFLOWS = new Overflow[0];
+
+    public static @NotNull List<Overflow> lint(@NotNull List<? extends CharSequence> pages, boolean hasFace) {
+        return lint(pages, hasFace, ForkJoinPool.commonPool());
+    }
+
+    // results are ordered by page, then by position in the page
+    public static @NotNull List<Overflow> lint(@NotNull List<? extends CharSequence> pages, boolean hasFace, @NotNull ForkJoinPool pool) {
+        final var parsed = TextParser.parseAll(pages, false, pool);
+        final var results = new Overflow[parsed.size()][];
+        if (results.length == 1) {
+            results[0] = lintPage(0, parsed.get(0), hasFace);
+        } else if (results.length > 1) {
+            pool.invoke(new LintTask(parsed, hasFace, results, 0, results.length));
+        }
+
+        final var overflows = new ArrayList<Overflow>();
+        for (var pageOverflows : results) {
+            overflows.addAll(List.of(pageOverflows));
+        }
+        return List.copyOf(overflows);
+    }
+
+    public static Overflow @NotNull [] lintPage(int page, @NotNull ElementBuffer elems, boolean hasFace) {
+        final var measurement = TextRenderer.measure(elems, hasFace);
+        if (!measurement.overflows()) {
+            return NO_OVERFLOWS;
+        }
+
+        final var positions = elems.getPositionIndex();
+        final var overflows = new ArrayList<Overflow>();
+        for (int line = 0, lineCount = measurement.getLineCount(); line < lineCount; line++) {
+            final int sourceStart = measurement.getLineSourceStart(line);
+            if (measurement.isLineTooWide(line)) {
+                overflows.add(new Overflow(page, Overflow.Kind.TOO_WIDE, sourceStart,
+                        "%s: line is %dpx wide, but only %dpx fit"
+                                .formatted(positions.describe(sourceStart), measurement.getLineWidth(line), measurement.getMaxWidth())));
+            }
+            if (measurement.isLineCutOff(line)) {
+                // everything after this is cut off too, no need to report every single line
+                overflows.add(new Overflow(page, Overflow.Kind.TOO_TALL, sourceStart,
+                        "%s: text is %dpx tall, but only %dpx fit"
+                                .formatted(positions.describe(sourceStart), measurement.getHeight(), measurement.getMaxHeight())));
+                break;
+            }
+        }
+        return overflows.toArray(NO_OVERFLOWS);
+    }
+
+    public record Overflow(int page, @NotNull Kind kind, int sourcePosition, @NotNull String message) {
+        public enum Kind {
+            TOO_WIDE,
+            TOO_TALL
+        }
+
+        @Override
+        public String toString() {
+            return "page %d, %s".formatted(page + 1, message);
+        }
+    }
+
+    private static final class LintTask extends RecursiveAction {
+        // ranges with fewer pages than this are measured on a single thread
+        private static final int SEQUENTIAL_THRESHOLD = 32;
+
+        private final @NotNull List<ElementBuffer> pages;
+        private final boolean hasFace;
+        private final Overflow @NotNull [] @NotNull [] results;
+        private final int from, to;
+
+        public LintTask(@NotNull List<ElementBuffer> pages, boolean hasFace, Overflow @NotNull [] @NotNull [] results, int from, int to) {
+            this.pages = pages;
+            this.hasFace = hasFace;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from >= SEQUENTIAL_THRESHOLD) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new LintTask(pages, hasFace, results, from, mid),
+                        new LintTask(pages, hasFace, results, mid, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                results[i] = lintPage(i, pages.get(i), hasFace);
+            }
+        }
+    }
+}
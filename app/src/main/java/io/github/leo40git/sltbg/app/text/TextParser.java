@@ -9,19 +9,17 @@
 
 package io.github.leo40git.sltbg.app.text;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
 
-import io.github.leo40git.sltbg.app.text.element.Element;
-import io.github.leo40git.sltbg.app.text.element.ErrorElement;
-import io.github.leo40git.sltbg.app.text.element.EscapedTextElement;
 import io.github.leo40git.sltbg.app.text.element.InvisibleControlElement;
-import io.github.leo40git.sltbg.app.text.element.LineBreakElement;
-import io.github.leo40git.sltbg.app.text.element.TextElement;
 import io.github.leo40git.sltbg.app.text.parse.ControlElementRegistry;
 import io.github.leo40git.sltbg.app.text.parse.ParsingUtils;
 import io.github.leo40git.sltbg.app.text.parse.TextScanner;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 public final class TextParser {
@@ -41,12 +39,74 @@ public final class TextParser {
         return sb;
     }
 
-    public static @NotNull List<Element> parse(@NotNull String source, boolean preserveInvisible) {
-        final var elems = new LinkedList<Element>();
-        final var scn = new TextScanner(source);
+    public static @NotNull ElementBuffer parse(@NotNull CharSequence source, boolean preserveInvisible) {
+        final var elems = ElementBuffer.builder(16);
+        parse0(elems, source, 0, preserveInvisible, null);
+        return elems.build();
+    }
+
+    // parses independent sources (e.g. the pages of a script) in parallel, results are in the same order as sources
+    public static @NotNull List<ElementBuffer> parseAll(@NotNull List<? extends CharSequence> sources, boolean preserveInvisible) {
+        return parseAll(sources, preserveInvisible, ForkJoinPool.commonPool());
+    }
+
+    public static @NotNull List<ElementBuffer> parseAll(@NotNull List<? extends CharSequence> sources, boolean preserveInvisible,
+                                                        @NotNull ForkJoinPool pool) {
+        final var results = new ElementBuffer[sources.size()];
+        if (results.length == 1) {
+            // not worth handing off to the pool
+            results[0] = parse(sources.get(0), preserveInvisible);
+        } else if (results.length > 1) {
+            pool.invoke(new ParseAllTask(sources, preserveInvisible, results, 0, results.length));
+        }
+        return List.of(results);
+    }
+
+    public static void parse(@NotNull CharSequence source, boolean preserveInvisible, @NotNull ElementSink sink) {
+        parse0(sink, source, 0, preserveInvisible, null);
+    }
+
+    public static void parse(@NotNull CharSequence source, @NotNull ElementSink sink) {
+        parse0(sink, source, 0, false, null);
+    }
+
+    public static @NotNull ElementBuffer parse(@NotNull CharSequence source, boolean preserveInvisible,
+                                               @NotNull ElementBuffer previous, @NotNull TextEdit edit) {
+        if (edit.getNewEnd() > source.length()) {
+            throw new IllegalArgumentException("edit does not represent a valid range in source");
+        }
+
+        // everything up to (and including) the last line break before the edit is unaffected by it,
+        //  since nothing (not even argument lookahead) is allowed to cross a line break
+        int keep = previous.findFirstEndingAfter(edit.offset());
+        while (keep > 0 && previous.getType(keep - 1) != ElementBuffer.TYPE_LINE_BREAK) {
+            keep--;
+        }
+        final int restart = keep == 0 ? 0 : previous.getSourceEnd(keep - 1);
+
+        final var lines = previous.getPositionIndex();
+        final var elems = ElementBuffer.builder(previous.size() + 8);
+        elems.addRange(previous, 0, keep, 0);
+        elems.addLineStarts(lines, 0, lines.getLine(restart), 0);
+
+        final var resync = new Resync(previous, edit);
+        if (parse0(elems, source, restart, preserveInvisible, resync)) {
+            // we emitted a line break that lines up with one from the previous parse,
+            //  so everything after it is unchanged (aside from its position)
+            final int delta = edit.getDelta();
+            elems.addRange(previous, resync.index + 1, previous.size(), delta);
+            elems.addLineStarts(lines, lines.getLine(previous.getSourceEnd(resync.index)), lines.getLineCount() - 1, delta);
+        }
+
+        return elems.build();
+    }
+
+    private static boolean parse0(@NotNull ElementSink sink, @NotNull CharSequence source, @Range(from = 0, to = Integer.MAX_VALUE) int start,
+                                  boolean preserveInvisible, @Nullable IntPredicate resync) {
+        final var scn = new TextScanner(source, start, source.length() - start);
         final var sb = getStringBuilder();
 
-        int sbStart = 0, sbLength = 0;
+        int sbStart = start, sbLength = 0;
         char ch;
         while ((ch = scn.read()) != TextScanner.EOF) {
             switch (ch) {
@@ -56,9 +116,9 @@ public final class TextParser {
                         case '\\' -> {
                             // escaped backslash
                             if (preserveInvisible) {
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new EscapedTextElement(sbStart, 2, "\\"));
+                                sink.escapedText(sbStart, 2, "\\");
                                 sbStart += 2;
                             } else {
                                 sb.append('\\');
@@ -69,36 +129,38 @@ public final class TextParser {
                         case '\n' -> {
                             // C-style escaped newline
                             if (preserveInvisible) {
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new InvisibleControlElement(sbStart, 2, InvisibleControlElement.Type.CONTINUE_LINE));
+                                sink.invisible(sbStart, 2, InvisibleControlElement.Type.CONTINUE_LINE);
                                 sbStart += 2;
                             } else {
                                 sbLength += 2;
                             }
+                            sink.lineStart(scn.getSourcePosition() + 1);
                             scn.skip();
                         }
                         case 'u' -> {
                             // 16-bit unicode escape
                             scn.skip();
-                            String valueStr = scn.read(4);
-                            if (valueStr == null) {
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                            if (!scn.canRead(4, '\n')) {
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new ErrorElement(sbStart, 2, true,
-                                        "\\u: value is missing or not long enough"));
+                                sink.error(sbStart, 2, true,
+                                        "\\u: value is missing or not long enough");
                                 sbStart += 2;
                                 break;
                             }
 
                             int value;
                             try {
-                                value = ParsingUtils.parseHexInt(valueStr);
+                                final int valueStart = scn.getSourcePosition();
+                                scn.skip(4);
+                                value = ParsingUtils.parseHexInt(source, valueStart, valueStart + 4);
                             } catch (NumberFormatException ignored) {
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new ErrorElement(sbStart, 6, true,
-                                        "\\u: value is not a valid hex number"));
+                                sink.error(sbStart, 6, true,
+                                        "\\u: value is not a valid hex number");
                                 sbStart += 6;
                                 break;
                             }
@@ -106,9 +168,9 @@ public final class TextParser {
                             try {
                                 if (preserveInvisible) {
                                     String contents = Character.toString(value);
-                                    sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                    sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                     sbLength = 0;
-                                    elems.add(new EscapedTextElement(sbStart, 6, contents));
+                                    sink.escapedText(sbStart, 6, contents);
                                     sbStart += 6;
                                 } else {
                                     sb.appendCodePoint(value);
@@ -116,34 +178,35 @@ public final class TextParser {
                                 }
                             } catch (IllegalArgumentException e) {
                                 // can only come from Character.toString/StringBuilder.appendCodePoint
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new ErrorElement(sbStart, 6, true,
-                                        "\\u: value 0x%04X is not a valid Unicode code point".formatted(value)));
+                                sink.error(sbStart, 6, true,
+                                        "\\u: value 0x%04X is not a valid Unicode code point".formatted(value));
                                 sbStart += 6;
                             }
                         }
                         case 'U' -> {
                             // 32-bit unicode escape
                             scn.skip();
-                            String valueStr = scn.read(8);
-                            if (valueStr == null) {
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                            if (!scn.canRead(8, '\n')) {
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new ErrorElement(sbStart, 2, true,
-                                        "\\U: value is missing or not long enough"));
+                                sink.error(sbStart, 2, true,
+                                        "\\U: value is missing or not long enough");
                                 sbStart += 2;
                                 break;
                             }
 
                             int value;
                             try {
-                                value = ParsingUtils.parseHexInt(valueStr);
+                                final int valueStart = scn.getSourcePosition();
+                                scn.skip(8);
+                                value = ParsingUtils.parseHexInt(source, valueStart, valueStart + 8);
                             } catch (NumberFormatException ignored) {
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new ErrorElement(sbStart, 10, true,
-                                        "\\U: value is not a valid hex number"));
+                                sink.error(sbStart, 10, true,
+                                        "\\U: value is not a valid hex number");
                                 sbStart += 10;
                                 break;
                             }
@@ -151,9 +214,9 @@ public final class TextParser {
                             try {
                                 if (preserveInvisible) {
                                     String contents = Character.toString(value);
-                                    sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                    sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                     sbLength = 0;
-                                    elems.add(new EscapedTextElement(sbStart, 10, contents));
+                                    sink.escapedText(sbStart, 10, contents);
                                     sbStart += 10;
                                 } else {
                                     sb.appendCodePoint(value);
@@ -161,34 +224,35 @@ public final class TextParser {
                                 }
                             } catch (IllegalArgumentException e) {
                                 // can only come from Character.toString/StringBuilder.appendCodePoint
-                                sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                 sbLength = 0;
-                                elems.add(new ErrorElement(sbStart, 10, true,
-                                        "\\U: value 0x%08X is not a valid Unicode code point".formatted(value)));
-                                sbStart += 6;
+                                sink.error(sbStart, 10, true,
+                                        "\\U: value 0x%08X is not a valid Unicode code point".formatted(value));
+                                sbStart += 10;
                             }
                         }
                         default -> {
                             if (ch != TextScanner.EOF) {
                                 var elem = ControlElementRegistry.parse(scn, sbStart + sbLength);
                                 if (elem != null) {
-                                    sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                                    sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                                     sbLength = 0;
-                                    elems.add(elem);
+                                    sink.element(elem);
                                     sbStart += elem.getSourceLength();
 
                                     char nextChar = scn.peek();
                                     if (nextChar == ';') {
                                         // control element terminator
                                         if (preserveInvisible) {
-                                            elems.add(new InvisibleControlElement(sbStart, 1, InvisibleControlElement.Type.TERMINATE));
+                                            sink.invisible(sbStart, 1, InvisibleControlElement.Type.TERMINATE);
                                         }
+                                        sbStart++;
                                         scn.skip();
                                     } else if (nextChar == '\\') {
                                         if (scn.peek(1) == ';') {
                                             // escaped control element terminator (also shows ';' character)
                                             if (preserveInvisible) {
-                                                elems.add(new EscapedTextElement(sbStart, 2, "\\;"));
+                                                sink.escapedText(sbStart, 2, "\\;");
                                                 sbStart += 2;
                                             } else {
                                                 sb.append(';');
@@ -210,28 +274,106 @@ public final class TextParser {
                     }
                 }
                 case '\n' -> {
-                    sbStart = flushTextElement(elems, sb, sbStart, sbLength);
+                    sbStart = flushTextElement(sink, sb, sbStart, sbLength);
                     sbLength = 0;
-                    elems.add(new LineBreakElement(sbStart));
+                    sink.lineBreak(sbStart);
+                    sink.lineStart(sbStart + 1);
+                    if (resync != null && resync.test(sbStart)) {
+                        return true;
+                    }
                     sbStart++;
                 }
                 default -> {
                     sb.append(ch);
                     sbLength++;
+                    // copy the rest of the plain text run in bulk
+                    sbLength += scn.appendRun(sb, '\\', '\n');
                 }
             }
         }
 
-        flushTextElement(elems, sb, sbStart, sbLength);
-        return elems;
+        flushTextElement(sink, sb, sbStart, sbLength);
+        return false;
     }
 
-    private static int flushTextElement(@NotNull List<Element> elems, @NotNull StringBuilder sb,
+    private static int flushTextElement(@NotNull ElementSink sink, @NotNull StringBuilder sb,
                                         @Range(from = 0, to = Integer.MAX_VALUE) int sbStart, @Range(from = 1, to = Integer.MAX_VALUE) int sbLength) {
         if (!sb.isEmpty()) {
-            elems.add(new TextElement(sbStart, sbLength, sb.toString()));
+            sink.text(sbStart, sbLength, sb);
             sb.setLength(0);
         }
         return sbStart + sbLength;
     }
+
+    private static final class ParseAllTask extends RecursiveAction {
+        // ranges with less source text than this are parsed on a single thread
+        private static final int SEQUENTIAL_THRESHOLD = 8 * 1024;
+
+        private final @NotNull List<? extends CharSequence> sources;
+        private final boolean preserveInvisible;
+        private final ElementBuffer @NotNull [] results;
+        private final int from, to;
+
+        public ParseAllTask(@NotNull List<? extends CharSequence> sources, boolean preserveInvisible,
+                            ElementBuffer @NotNull [] results, int from, int to) {
+            this.sources = sources;
+            this.preserveInvisible = preserveInvisible;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                long length = 0;
+                for (int i = from; i < to && length < SEQUENTIAL_THRESHOLD; i++) {
+                    length += sources.get(i).length();
+                }
+
+                if (length >= SEQUENTIAL_THRESHOLD) {
+                    final int mid = (from + to) >>> 1;
+                    invokeAll(new ParseAllTask(sources, preserveInvisible, results, from, mid),
+                            new ParseAllTask(sources, preserveInvisible, results, mid, to));
+                    return;
+                }
+            }
+
+            // each worker thread gets its own pooled StringBuilder, so there's nothing to share here
+            for (int i = from; i < to; i++) {
+                results[i] = parse(sources.get(i), preserveInvisible);
+            }
+        }
+    }
+
+    private static final class Resync implements IntPredicate {
+        private final @NotNull ElementBuffer previous;
+        private final int newEnd, delta;
+        private int index;
+
+        public Resync(@NotNull ElementBuffer previous, @NotNull TextEdit edit) {
+            this.previous = previous;
+            newEnd = edit.getNewEnd();
+            delta = edit.getDelta();
+            index = previous.findFirstStartingAt(edit.getOldEnd());
+        }
+
+        @Override
+        public boolean test(int position) {
+            if (position < newEnd) {
+                // line break is still inside the edited span
+                return false;
+            }
+
+            final int oldPosition = position - delta;
+            final int size = previous.size();
+            while (index < size && previous.getSourceStart(index) < oldPosition) {
+                index++;
+            }
+
+            return index < size
+                    && previous.getType(index) == ElementBuffer.TYPE_LINE_BREAK
+                    && previous.getSourceStart(index) == oldPosition;
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.jetbrains.annotations.NotNull;
+
+// a TextLayoutPlan compiled down to a flat instruction stream, for text that gets rendered over and over
+// colors and fonts only get switched when they actually change, and every distinct string, color and font
+//  is only stored once in its constant pool
+// instructions are an opcode followed by its operands:
+//  COLOR color, FONT font, RUN string x baselineY, ICON x y index
+public final class TextRenderProgram {
+    public static final int OP_COLOR = 0;
+    public static final int OP_FONT = 1;
+    public static final int OP_RUN = 2;
+    public static final int OP_ICON = 3;
+
+    private final int[] code;
+    private final String[] strings;
+    private final Color[] colors;
+    private final FontTable.Entry[] fonts;
+    // style mask of each font in the pool
+    private final int[] fontStyleMasks;
+    private final int width, height;
+
+    private TextRenderProgram(int[] code, String[] strings, Color[] colors, FontTable.Entry[] fonts, int[] fontStyleMasks,
+                              int width, int height) {
+        this.code = code;
+        this.strings = strings;
+        this.colors = colors;
+        this.fonts = fonts;
+        this.fontStyleMasks = fontStyleMasks;
+        this.width = width;
+        this.height = height;
+    }
+
+    public static @NotNull TextRenderProgram compile(@NotNull TextLayoutPlan plan) {
+        int[] code = new int[plan.size() * 4 + 8];
+        int pc = 0;
+
+        final var strings = new Pool<String>();
+        final var colors = new Pool<Color>();
+        final var fonts = new Pool<FontKey>();
+
+        int color = -1, font = -1;
+        for (int i = 0, size = plan.size(); i < size; i++) {
+            // at most 2 state changes and 1 draw per item
+            if (pc + 10 > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+
+            switch (plan.getKind(i)) {
+                case TextLayoutPlan.KIND_RUN -> {
+                    final int runColor = colors.indexOf(plan.getColor(i));
+                    if (runColor != color) {
+                        code[pc++] = OP_COLOR;
+                        code[pc++] = color = runColor;
+                    }
+                    final int runFont = fonts.indexOf(new FontKey(plan.getFont(i), plan.getStyleMask(i)));
+                    if (runFont != font) {
+                        code[pc++] = OP_FONT;
+                        code[pc++] = font = runFont;
+                    }
+                    code[pc++] = OP_RUN;
+                    code[pc++] = strings.indexOf(plan.getText(i));
+                    code[pc++] = plan.getX(i);
+                    code[pc++] = plan.getY(i);
+                }
+                case TextLayoutPlan.KIND_ICON -> {
+                    code[pc++] = OP_ICON;
+                    code[pc++] = plan.getX(i);
+                    code[pc++] = plan.getY(i);
+                    code[pc++] = plan.getIconIndex(i);
+                }
+                default -> throw new IllegalStateException("Unknown item kind " + plan.getKind(i));
+            }
+        }
+
+        final var fontKeys = fonts.toArray(new FontKey[0]);
+        final var fontEntries = new FontTable.Entry[fontKeys.length];
+        final var fontStyleMasks = new int[fontKeys.length];
+        for (int i = 0; i < fontKeys.length; i++) {
+            fontEntries[i] = fontKeys[i].font();
+            fontStyleMasks[i] = fontKeys[i].styleMask();
+        }
+
+        return new TextRenderProgram(Arrays.copyOf(code, pc), strings.toArray(new String[0]), colors.toArray(new Color[0]),
+                fontEntries, fontStyleMasks, plan.getWidth(), plan.getHeight());
+    }
+
+    // the instruction stream, don't modify!
+    int[] code() {
+        return code;
+    }
+
+    public int getCodeLength() {
+        return code.length;
+    }
+
+    public @NotNull String getString(int index) {
+        return strings[index];
+    }
+
+    public @NotNull Color getColor(int index) {
+        return colors[index];
+    }
+
+    public @NotNull FontTable.Entry getFont(int index) {
+        return fonts[index];
+    }
+
+    public int getFontStyleMask(int index) {
+        return fontStyleMasks[index];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private record FontKey(@NotNull FontTable.Entry font, int styleMask) { }
+
+    private static final class Pool<T> {
+        private final HashMap<T, Integer> indices = new HashMap<>();
+
+        public int indexOf(@NotNull T value) {
+            return indices.computeIfAbsent(value, key -> indices.size());
+        }
+
+        public T @NotNull [] toArray(T @NotNull [] empty) {
+            final var array = Arrays.copyOf(empty, indices.size());
+            for (var entry : indices.entrySet()) {
+                array[entry.getValue()] = entry.getKey();
+            }
+            return array;
+        }
+    }
+}
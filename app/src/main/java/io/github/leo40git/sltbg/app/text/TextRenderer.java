@@ -10,41 +10,88 @@
 package io.github.leo40git.sltbg.app.text;
 
 import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.font.TextAttribute;
-import java.awt.font.TextLayout;
-import java.awt.geom.AffineTransform;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 
 import io.github.leo40git.sltbg.app.assets.GameAssets;
-import io.github.leo40git.sltbg.app.text.element.ColorControlElement;
 import io.github.leo40git.sltbg.app.text.element.Element;
-import io.github.leo40git.sltbg.app.text.element.IconControlElement;
-import io.github.leo40git.sltbg.app.text.element.LineBreakElement;
-import io.github.leo40git.sltbg.app.text.element.SizeControlElement;
-import io.github.leo40git.sltbg.app.text.element.StyleControlElement;
-import io.github.leo40git.sltbg.app.text.element.TextElement;
 import io.github.leo40git.sltbg.app.util.GraphicsState;
+import io.leo40git.sltbg.swing.RenderQuality;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public final class TextRenderer {
+    public static final int NO_WRAP = 0;
+    // space between unwrapped lines, on top of the size of the biggest text on them
+    //  (which makes lines of default-sized text 24px tall, so 4 of them fit in a textbox)
+    private static final int LINE_SPACING = 6;
+
     private TextRenderer() {
         throw new UnsupportedOperationException("TextRenderer only contains static declarations.");
     }
 
     public static void render(@NotNull Graphics2D g, int x, int y, @NotNull List<Element> elems) {
+        render(g, x, y, elems, RenderQuality.FINAL);
+    }
+
+    public static void render(@NotNull Graphics2D g, int x, int y, @NotNull List<Element> elems, @NotNull RenderQuality quality) {
+        render(g, x, y, layout(elems), quality);
+    }
+
+    public static void render(@NotNull Graphics2D g, int x, int y, @NotNull TextLayoutPlan plan) {
+        render(g, x, y, plan, RenderQuality.FINAL);
+    }
+
+    public static void render(@NotNull Graphics2D g, int x, int y, @NotNull TextLayoutPlan plan, @NotNull RenderQuality quality) {
+        var oldState = GraphicsState.save(g);
+        try {
+            render0(g, x, y, plan, quality);
+        } finally {
+            oldState.restore(g);
+        }
+    }
+
+    public static void render(@NotNull Graphics2D g, int x, int y, @NotNull TextRenderProgram program) {
+        render(g, x, y, program, RenderQuality.FINAL);
+    }
+
+    public static void render(@NotNull Graphics2D g, int x, int y, @NotNull TextRenderProgram program, @NotNull RenderQuality quality) {
         var oldState = GraphicsState.save(g);
         try {
-            render0(g, x, y, elems);
+            render0(g, x, y, program, quality);
         } finally {
             oldState.restore(g);
         }
     }
 
+    public static @NotNull TextLayoutPlan layout(@NotNull List<Element> elems) {
+        return layout(elems, NO_WRAP);
+    }
+
+    // with a wrap width, text is wrapped at word boundaries to fit in it, and lines are as tall as their fonts say
+    public static @NotNull TextLayoutPlan layout(@NotNull List<Element> elems, int wrapWidth) {
+        final var buf = ElementBuffer.copyOf(elems);
+        final long[] breaks = wrapWidth == NO_WRAP ? WordWrapper.NO_BREAKS : WordWrapper.findBreaks(buf, wrapWidth);
+        final var plan = TextLayoutPlan.builder(buf.size());
+        final var lines = new LineBoxes();
+        layout0(buf, breaks, plan, lines, wrapWidth != NO_WRAP);
+        return plan.build(lines);
+    }
+
+    public static @NotNull TextMeasurement measure(@NotNull List<Element> elems, boolean hasFace) {
+        return measure(elems, hasFace, false);
+    }
+
+    // only lays out line boxes, without keeping (or allocating) anything for the runs themselves
+    public static @NotNull TextMeasurement measure(@NotNull List<Element> elems, boolean hasFace, boolean wrap) {
+        final int maxWidth = GameAssets.getTextboxTextWidth(hasFace);
+        final var buf = ElementBuffer.copyOf(elems);
+        final long[] breaks = wrap ? WordWrapper.findBreaks(buf, maxWidth) : WordWrapper.NO_BREAKS;
+        final var lines = new LineBoxes();
+        layout0(buf, breaks, null, lines, wrap);
+        return new TextMeasurement(lines, maxWidth, GameAssets.TEXTBOX_TEXT_HEIGHT);
+    }
+
     private static final ThreadLocal<StringBuilder> TL_SB = new ThreadLocal<>();
 
     private static @NotNull StringBuilder getStringBuilder() {
@@ -57,129 +104,271 @@ public final class TextRenderer {
         return sb;
     }
 
-    private static void render0(@NotNull Graphics2D g, int x, int y, @NotNull List<Element> elems) {
-        final int startX = x;
-        final int lineHeight = 24;
-        final var sb = getStringBuilder();
-        final var tx = new AffineTransform();
+    private static void layout0(@NotNull ElementBuffer elems, long @NotNull [] breaks, @Nullable TextLayoutPlan.Builder plan,
+                                @NotNull LineBoxes lines, boolean metricLineHeights) {
+        final var layout = new LineLayout(plan, lines, metricLineHeights);
+        int nextBreak = 0;
+        for (int j = 0, elemsSize = elems.size(); j < elemsSize; j++) {
+            final int type = elems.getType(j);
+            if (type != ElementBuffer.TYPE_TEXT && type != ElementBuffer.TYPE_ESCAPED_TEXT) {
+                layout.add(elems, j);
+                continue;
+            }
+
+            final String text = elems.getText(j);
+            int from = 0;
+            for (; nextBreak < breaks.length && (int) (breaks[nextBreak] >>> 32) == j; nextBreak++) {
+                // the space that gets broken at doesn't end up on either line
+                final int k = (int) breaks[nextBreak];
+                layout.addText(text, from, k);
+                layout.endLine(getBreakSourceStart(elems, j, k));
+                from = k + 1;
+            }
+            layout.addText(text, from, text.length());
+        }
+        layout.endLine(elems.size() == 0 ? 0 : elems.getSourceEnd(elems.size() - 1));
+    }
+
+    // where the line after a wrapped space starts in the source
+    // text with escapes in it doesn't map 1:1 onto its source, so lines that start inside it start where it does instead
+    private static int getBreakSourceStart(@NotNull ElementBuffer elems, int index, int charIndex) {
+        final int start = elems.getSourceStart(index);
+        return elems.getText(index).length() == elems.getSourceLength(index) ? start + charIndex + 1 : start;
+    }
 
-        int fontSizeDelta = 0;
-        final var fontActiveStyles = new boolean[TextStyle.COUNT];
-        Arrays.fill(fontActiveStyles, false);
-        boolean fontNeedsUpdate = false;
+    // keeps track of where the next item goes while layout0 goes through the elements
+    private static final class LineLayout {
+        private static final int NO_SIZE_DELTA = Integer.MIN_VALUE;
 
-        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
-        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        private final @Nullable TextLayoutPlan.Builder plan;
+        private final @NotNull LineBoxes lines;
+        private final boolean metricLineHeights;
+        private final @NotNull FontFallbackChain chain;
+        private final @NotNull FontState state;
+        private final int defaultMaxAscent, defaultAscent;
+        // text since the last element that wasn't text, laid out as one run (or one per font it needs)
+        private final @NotNull StringBuilder sb;
+        private @NotNull Color color;
 
-        g.setColor(GameAssets.getPaletteColor(0));
-        g.setFont(GameAssets.getFontAtDefaultSize());
-        final int defaultMaxAscent = g.getFontMetrics().getMaxAscent();
+        // x only gets rounded when something is put at it, so the rounding doesn't pile up over a line
+        private float x;
+        private int y;
+        // with metric line heights, items get positioned relative to the baseline until their line is finished
+        private int lineFirstItem, lineAscent, lineDescent;
+        // without them, lines are as tall as the biggest text on them (and at least as tall as any icons on them)
+        private int lineSizeDelta = NO_SIZE_DELTA;
+        private boolean lineHasIcon;
 
-        for (int j = 0, elemsSize = elems.size(); j < elemsSize; j++) {
-            var elem = elems.get(j);
-            if (elem instanceof TextElement text) {
-                sb.append(text.getContents());
-                // don't skip rendering if this is the last element
-                if (j < elemsSize - 1) {
-                    continue;
-                }
+        public LineLayout(@Nullable TextLayoutPlan.Builder plan, @NotNull LineBoxes lines, boolean metricLineHeights) {
+            this.plan = plan;
+            this.lines = lines;
+            this.metricLineHeights = metricLineHeights;
+            chain = GameAssets.getFontChain();
+            state = new FontState(chain.getPrimary());
+            final var defaultFont = state.getFont();
+            defaultMaxAscent = defaultFont.maxAscent();
+            defaultAscent = defaultFont.metrics().getAscent();
+            sb = getStringBuilder();
+            color = GameAssets.getPaletteColor(0);
+        }
+
+        public void addText(@NotNull String text, int start, int end) {
+            sb.append(text, start, end);
+        }
+
+        // anything that isn't text
+        public void add(@NotNull ElementBuffer elems, int index) {
+            flushText();
+            if (state.apply(elems, index)) {
+                return;
             }
 
-            if (sb.length() > 0) {
-                if (fontNeedsUpdate) {
-                    g.setFont(getDerivedFont(fontSizeDelta, fontActiveStyles));
-                    fontNeedsUpdate = false;
-                }
+            switch (elems.getType(index)) {
+                case ElementBuffer.TYPE_LINE_BREAK -> endLine(elems.getSourceEnd(index));
+                case ElementBuffer.TYPE_ICON -> addIcon(elems.getIconIndex(index));
+                case ElementBuffer.TYPE_COLOR -> color = elems.getColor(index);
+            }
+        }
 
-                var layout = new TextLayout(sb.toString(), g.getFont(), g.getFontRenderContext());
-                sb.setLength(0);
+        private void flushText() {
+            if (sb.length() == 0) {
+                return;
+            }
 
-                tx.setToTranslation(x, y + defaultMaxAscent + fontSizeDelta * 6);
-                var outline = layout.getOutline(tx);
+            final String text = sb.toString();
+            sb.setLength(0);
+            final int styleMask = state.getStyleMask();
 
-                // draw shadow...
-                var oc = g.getColor();
-                var gTx = g.getTransform();
-                gTx.translate(-1, -1);
-                g.setColor(Color.BLACK);
-                g.fill(outline);
+            // every span of the text gets drawn in the first font of the chain that can display it
+            int spanStart = 0;
+            while (spanStart < text.length()) {
+                final int spanEnd = chain.findSpanEnd(text, spanStart, text.length());
+                final int fontIndex = chain.resolve(text.codePointAt(spanStart));
+                final var font = fontIndex == 0 ? state.getFont() : chain.get(fontIndex).get(styleMask, state.getSizeDelta());
+                final String span = spanEnd - spanStart == text.length() ? text : text.substring(spanStart, spanEnd);
+                spanStart = spanEnd;
 
-                // ...then draw the actual text
-                g.setTransform(gTx);
-                g.setColor(oc);
-                g.fill(outline);
+                // runs are only ever measured through the advance tables, so measuring never has to lay anything out
+                //  (and comes out the same with or without a plan)
+                final float advance = font.advances().measure(span, 0, span.length());
+                final float overhang = (styleMask & FontTable.DECORATION_STYLES) == 0 ? 0 : FontTable.DECORATION_ALLOWANCE;
+
+                final int baselineY;
+                if (metricLineHeights) {
+                    baselineY = 0;
+                    lineAscent = Math.max(lineAscent, font.metrics().getAscent());
+                    lineDescent = Math.max(lineDescent, font.metrics().getDescent() + font.metrics().getLeading());
+                } else {
+                    baselineY = y + defaultMaxAscent + state.getSizeDelta() * 6;
+                    lineSizeDelta = Math.max(lineSizeDelta, state.getSizeDelta());
+                }
 
-                x += layout.getAdvance();
+                if (plan != null) {
+                    plan.addRun(Math.round(x), baselineY, span, font, styleMask, color, advance);
+                }
+                // trailing spaces don't make a line any wider
+                int visibleEnd = span.length();
+                while (visibleEnd > 0 && span.charAt(visibleEnd - 1) == ' ') {
+                    visibleEnd--;
+                }
+                if (visibleEnd == span.length()) {
+                    lines.extend(x + advance + overhang);
+                } else if (visibleEnd > 0) {
+                    lines.extend(x + advance - font.advances().measure(span, visibleEnd, span.length()) + overhang);
+                }
+                x += advance;
             }
+        }
 
-            if (elem instanceof LineBreakElement) {
-                x = startX;
-                // TODO make this accurate
-                y += lineHeight + fontSizeDelta * 8;
-            } else if (elem instanceof IconControlElement e) {
+        private void addIcon(int index) {
+            final int iconY;
+            if (metricLineHeights) {
+                // icons sit where the default font's ascent would
+                iconY = -defaultAscent;
+                lineAscent = Math.max(lineAscent, defaultAscent);
+                lineDescent = Math.max(lineDescent, GameAssets.ICON_SIZE - defaultAscent);
+            } else {
                 //final int yo = defaultMaxAscent / 2 - GameAssets.ICON_SIZE / 2;
-                GameAssets.drawIcon(g, x, y /* + yo */, Integer.parseInt(e.getName())); // FIXME
-                x += GameAssets.ICON_SIZE;
-            } else if (elem instanceof ColorControlElement e) {
-                g.setColor(e.getColor());
-            } else if (elem instanceof StyleControlElement.Toggle e) {
-                int i = e.getTarget().ordinal();
-                fontActiveStyles[i] = !fontActiveStyles[i];
-                fontNeedsUpdate = true;
-            } else if (elem instanceof StyleControlElement.Reset) {
-                for (int i = 0; i < fontActiveStyles.length; i++) {
-                    if (fontActiveStyles[i]) {
-                        fontNeedsUpdate = true;
-                    }
-                    fontActiveStyles[i] = false;
+                iconY = y /* + yo */;
+                lineHasIcon = true;
+            }
+            if (plan != null) {
+                plan.addIcon(Math.round(x), iconY, index);
+            }
+            x += GameAssets.ICON_SIZE;
+            lines.extend(x);
+        }
+
+        public void endLine(int nextSourceStart) {
+            flushText();
+
+            final int height;
+            if (metricLineHeights) {
+                if (lineAscent == 0 && lineDescent == 0) {
+                    // empty line, goes by whatever font is current
+                    final var metrics = state.getFont().metrics();
+                    lineAscent = metrics.getAscent();
+                    lineDescent = metrics.getDescent() + metrics.getLeading();
                 }
-            } else if (elem instanceof SizeControlElement e) {
-                if (e.getDelta() == 0) {
-                    if (fontSizeDelta != 0) {
-                        fontNeedsUpdate = true;
-                    }
-                    fontSizeDelta = 0;
-                } else {
-                    fontSizeDelta += e.getDelta();
-                    fontNeedsUpdate = true;
+                height = lineAscent + lineDescent;
+                if (plan != null) {
+                    plan.offsetY(lineFirstItem, y + lineAscent);
+                    lineFirstItem = plan.size();
                 }
+                lineAscent = lineDescent = 0;
+            } else {
+                // lines without any text go by whatever size is current
+                final int sizeDelta = lineSizeDelta == NO_SIZE_DELTA ? state.getSizeDelta() : lineSizeDelta;
+                final int textHeight = (int) Math.ceil(FontTable.getFontSize(sizeDelta)) + LINE_SPACING;
+                height = lineHasIcon ? Math.max(textHeight, GameAssets.ICON_SIZE) : textHeight;
+                lineSizeDelta = NO_SIZE_DELTA;
+                lineHasIcon = false;
             }
+            lines.endLine(height, nextSourceStart);
+            x = 0;
+            y += height;
         }
     }
 
-    private static final ThreadLocal<HashMap<TextAttribute, Object>> TL_ATTR_MAP = ThreadLocal.withInitial(() -> new HashMap<>(5));
+    static void setupGraphics(@NotNull Graphics2D g, @NotNull RenderQuality quality) {
+        quality.applyTextHints(g);
+        // icons get scaled along with everything else if g is
+        quality.applyImageHints(g);
+    }
 
-    private static @NotNull Font getDerivedFont(int sizeDelta, boolean @NotNull [] activeStyles) {
-        var map = TL_ATTR_MAP.get();
-        map.clear();
+    private static void render0(@NotNull Graphics2D g, int x, int y, @NotNull TextLayoutPlan plan, @NotNull RenderQuality quality) {
+        setupGraphics(g, quality);
 
-        if (sizeDelta != 0) {
-            // TODO make this accurate
-            map.put(TextAttribute.SIZE, GameAssets.DEFAULT_FONT_SIZE + sizeDelta * 8);
+        final boolean canBlit = GlyphAtlas.canDrawOnto(g);
+        for (int i = 0, size = plan.size(); i < size; i++) {
+            final int itemX = x + plan.getX(i), itemY = y + plan.getY(i);
+            switch (plan.getKind(i)) {
+                case TextLayoutPlan.KIND_RUN -> {
+                    g.setColor(plan.getColor(i));
+                    drawRun(g, plan.getText(i), plan.getFont(i), plan.getStyleMask(i), itemX, itemY, canBlit, quality);
+                }
+                case TextLayoutPlan.KIND_ICON -> GameAssets.drawIcon(g, itemX, itemY, plan.getIconIndex(i));
+            }
         }
+    }
 
-        if (activeStyles[TextStyle.BOLD.ordinal()]) {
-            map.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
-        }
+    private static void render0(@NotNull Graphics2D g, int x, int y, @NotNull TextRenderProgram program, @NotNull RenderQuality quality) {
+        setupGraphics(g, quality);
 
-        if (activeStyles[TextStyle.ITALIC.ordinal()]) {
-            map.put(TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE);
+        final boolean canBlit = GlyphAtlas.canDrawOnto(g);
+        final int[] code = program.code();
+        FontTable.Entry font = null;
+        int fontStyleMask = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case TextRenderProgram.OP_COLOR -> {
+                    g.setColor(program.getColor(code[pc + 1]));
+                    pc += 2;
+                }
+                case TextRenderProgram.OP_FONT -> {
+                    font = program.getFont(code[pc + 1]);
+                    fontStyleMask = program.getFontStyleMask(code[pc + 1]);
+                    pc += 2;
+                }
+                case TextRenderProgram.OP_RUN -> {
+                    assert font != null;
+                    drawRun(g, program.getString(code[pc + 1]), font, fontStyleMask, x + code[pc + 2], y + code[pc + 3], canBlit,
+                            quality);
+                    pc += 4;
+                }
+                case TextRenderProgram.OP_ICON -> {
+                    GameAssets.drawIcon(g, x + code[pc + 1], y + code[pc + 2], code[pc + 3]);
+                    pc += 4;
+                }
+                default -> throw new IllegalStateException("Unknown opcode %d at %d".formatted(code[pc], pc));
+            }
         }
+    }
 
-        if (activeStyles[TextStyle.UNDERLINE.ordinal()]) {
-            map.put(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
-        }
+    // draws a run in the current color with its baseline starting at (x, baselineY), along with its shadow (if wanted)
+    // the text itself goes 1px above and to the left of where its shadow would be, with or without the shadow
+    // g has to be set up for quality already
+    static void drawRun(@NotNull Graphics2D g, @NotNull String text, @NotNull FontTable.Entry font, int styleMask,
+                        int x, int baselineY, boolean canBlit, @NotNull RenderQuality quality) {
+        final boolean shadow = quality.hasShadows();
+        if (canBlit && (styleMask & FontTable.DECORATION_STYLES) == 0) {
+            font.glyphs().drawRun(g, text, x - 1, baselineY - 1, shadow ? Color.BLACK : null, quality);
+        } else {
+            // outlines come from the same context the run was measured with, so glyphs land where layout put them
+            //  no matter what fractional metrics hint g has
+            var outline = OutlineCache.shared().get(text, font.font(), FontTable.LAYOUT_FRC);
 
-        if (activeStyles[TextStyle.STRIKETHROUGH.ordinal()]) {
-            map.put(TextAttribute.STRIKETHROUGH, TextAttribute.STRIKETHROUGH_ON);
-        }
+            if (shadow) {
+                // draw shadow...
+                var oc = g.getColor();
+                g.setColor(Color.BLACK);
+                outline.fill(g, x, baselineY);
+                g.setColor(oc);
+            }
 
-        if (map.isEmpty()) {
-            return GameAssets.getFontAtDefaultSize();
-        } else {
-            return GameAssets.getFont().deriveFont(map);
+            // ...then draw the actual text
+            outline.fill(g, x - 1, baselineY - 1);
         }
     }
 }
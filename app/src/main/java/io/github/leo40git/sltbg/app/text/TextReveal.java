@@ -0,0 +1,138 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.util.GraphicsState;
+import io.leo40git.sltbg.swing.RenderQuality;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// splits a TextLayoutPlan into the steps a typewriter would show it in: one per character of every run, and one per icon
+// rendering the first n steps gives exactly what rendering the whole plan would, minus everything after them,
+//  so an animation can redraw just the area a step touched instead of the whole text
+public final class TextReveal {
+    private final @NotNull TextLayoutPlan plan;
+    // plan item each step belongs to, and how many chars of that item are visible once it's been shown
+    private final int[] stepItems, stepEnds;
+
+    private TextReveal(@NotNull TextLayoutPlan plan, int[] stepItems, int[] stepEnds) {
+        this.plan = plan;
+        this.stepItems = stepItems;
+        this.stepEnds = stepEnds;
+    }
+
+    public static @NotNull TextReveal of(@NotNull TextLayoutPlan plan) {
+        int[] stepItems = new int[64], stepEnds = new int[64];
+        int stepCount = 0;
+        for (int i = 0, size = plan.size(); i < size; i++) {
+            if (plan.getKind(i) == TextLayoutPlan.KIND_ICON) {
+                if (stepCount == stepItems.length) {
+                    stepItems = Arrays.copyOf(stepItems, stepCount * 2);
+                    stepEnds = Arrays.copyOf(stepEnds, stepCount * 2);
+                }
+                stepItems[stepCount] = i;
+                stepEnds[stepCount++] = 1;
+                continue;
+            }
+
+            final var text = plan.getText(i);
+            int k = 0;
+            while (k < text.length()) {
+                // surrogate pairs show up together
+                k += Character.charCount(text.codePointAt(k));
+                if (stepCount == stepItems.length) {
+                    stepItems = Arrays.copyOf(stepItems, stepCount * 2);
+                    stepEnds = Arrays.copyOf(stepEnds, stepCount * 2);
+                }
+                stepItems[stepCount] = i;
+                stepEnds[stepCount++] = k;
+            }
+        }
+        return new TextReveal(plan, Arrays.copyOf(stepItems, stepCount), Arrays.copyOf(stepEnds, stepCount));
+    }
+
+    public @NotNull TextLayoutPlan getPlan() {
+        return plan;
+    }
+
+    public int getStepCount() {
+        return stepItems.length;
+    }
+
+    // everything showing the given step could draw to, relative to where the plan is rendered
+    // this errs on the big side (glyphs can hang out of their advance, and there's the shadow), never on the small side
+    public @NotNull Rectangle getStepBounds(@Range(from = 0, to = Integer.MAX_VALUE) int step) {
+        final int i = stepItems[step];
+        final int x = plan.getX(i), y = plan.getY(i);
+        if (plan.getKind(i) == TextLayoutPlan.KIND_ICON) {
+            return new Rectangle(x, y, GameAssets.ICON_SIZE, GameAssets.ICON_SIZE);
+        }
+
+        final var text = plan.getText(i);
+        final var font = plan.getFont(i);
+        final int start = step > 0 && stepItems[step - 1] == i ? stepEnds[step - 1] : 0;
+        final var advances = font.advances();
+        final int left = (int) Math.floor(x + advances.measure(text, 0, start));
+        final int right = (int) Math.ceil(x + advances.measure(text, 0, stepEnds[step]));
+        return getRunBounds(font, left, right, y);
+    }
+
+    private static @NotNull Rectangle getRunBounds(@NotNull FontTable.Entry font, int left, int right, int baselineY) {
+        final int slack = (int) Math.ceil(font.font().getSize2D());
+        final int top = baselineY - font.maxAscent() - slack;
+        final int bottom = baselineY + font.metrics().getMaxDescent() + slack;
+        return new Rectangle(left - slack, top, right - left + slack * 2, bottom - top);
+    }
+
+    // renders everything up to (but not including) the given step, skipping whatever is entirely outside g's clip
+    public void render(@NotNull Graphics2D g, int x, int y, @Range(from = 0, to = Integer.MAX_VALUE) int stepCount,
+                       @NotNull RenderQuality quality) {
+        if (stepCount <= 0) {
+            return;
+        }
+
+        var oldState = GraphicsState.save(g);
+        try {
+            TextRenderer.setupGraphics(g, quality);
+
+            final var clip = g.getClipBounds();
+            final boolean canBlit = GlyphAtlas.canDrawOnto(g);
+            final int lastItem = stepItems[stepCount - 1];
+            for (int i = 0; i <= lastItem; i++) {
+                final int itemX = x + plan.getX(i), itemY = y + plan.getY(i);
+                if (plan.getKind(i) == TextLayoutPlan.KIND_ICON) {
+                    if (clip == null || clip.intersects(itemX, itemY, GameAssets.ICON_SIZE, GameAssets.ICON_SIZE)) {
+                        GameAssets.drawIcon(g, itemX, itemY, plan.getIconIndex(i));
+                    }
+                    continue;
+                }
+
+                final var font = plan.getFont(i);
+                if (clip != null && !clip.intersects(getRunBounds(font, itemX, (int) Math.ceil(itemX + plan.getAdvance(i)), itemY))) {
+                    continue;
+                }
+
+                var text = plan.getText(i);
+                if (i == lastItem && stepEnds[stepCount - 1] < text.length()) {
+                    text = text.substring(0, stepEnds[stepCount - 1]);
+                }
+                g.setColor(plan.getColor(i));
+                TextRenderer.drawRun(g, text, font, plan.getStyleMask(i), itemX, itemY, canBlit, quality);
+            }
+        } finally {
+            oldState.restore(g);
+        }
+    }
+}
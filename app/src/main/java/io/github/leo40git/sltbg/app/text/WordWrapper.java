@@ -0,0 +1,139 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.text;
+
+import java.util.Arrays;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import org.jetbrains.annotations.NotNull;
+
+// finds the spaces that should become line breaks, wherever the text after them would run past the available width
+// only breaks between words, a word that's too wide on its own is left to overflow
+// widths come from the same advance tables layout measures with, so this stays linear in the length of the text
+// the breaks themselves are made during layout, so text doesn't need to map 1:1 onto its source to be broken
+final class WordWrapper {
+    static final long[] NO_BREAKS = new long[0];
+
+    private WordWrapper() {
+        throw new UnsupportedOperationException("WordWrapper only contains static declarations.");
+    }
+
+    // returns (element index << 32 | char index) of every space that should become a line break, in order
+    static long @NotNull [] findBreaks(@NotNull ElementBuffer elems, int maxWidth) {
+        long[] breaks = new long[8];
+        int breakCount = 0;
+
+        final var chain = GameAssets.getFontChain();
+        final var state = new FontState(chain.getPrimary());
+        float x = 0;
+        // last space on the current line, and how far into the line the text after it starts
+        long candidate = -1;
+        float candidateX = 0;
+        // text elements that follow each other are laid out as one run, so kerning carries over between them
+        char prev = 0;
+        int prevFontIndex = 0;
+
+        for (int j = 0, elemsSize = elems.size(); j < elemsSize; j++) {
+            final int type = elems.getType(j);
+            if (type != ElementBuffer.TYPE_TEXT && type != ElementBuffer.TYPE_ESCAPED_TEXT) {
+                prev = 0;
+            }
+
+            if (state.apply(elems, j)) {
+                continue;
+            }
+
+            switch (type) {
+                case ElementBuffer.TYPE_TEXT, ElementBuffer.TYPE_ESCAPED_TEXT -> {
+                    final var text = elems.getText(j);
+                    final var primaryAdvances = state.getFont().advances();
+                    final float overhang = (state.getStyleMask() & FontTable.DECORATION_STYLES) == 0
+                            ? 0 : FontTable.DECORATION_ALLOWANCE;
+                    // escaped spaces stay where they were written
+                    final boolean breakable = type == ElementBuffer.TYPE_TEXT;
+
+                    // the fallback font that was used last, so it doesn't need to be looked up again for every character
+                    int fallbackIndex = 0;
+                    AdvanceTable fallbackAdvances = null;
+                    for (int k = 0, length = text.length(); k < length; k++) {
+                        final char ch = text.charAt(k);
+                        final boolean surrogatePair = Character.isHighSurrogate(ch) && k + 1 < length
+                                && Character.isLowSurrogate(text.charAt(k + 1));
+                        final int codePoint = surrogatePair ? Character.toCodePoint(ch, text.charAt(k + 1)) : ch;
+                        final int fontIndex = chain.resolve(codePoint);
+                        final AdvanceTable advances;
+                        if (fontIndex == 0) {
+                            advances = primaryAdvances;
+                        } else {
+                            if (fontIndex != fallbackIndex) {
+                                fallbackIndex = fontIndex;
+                                fallbackAdvances = chain.get(fontIndex).get(state.getStyleMask(), state.getSizeDelta()).advances();
+                            }
+                            advances = fallbackAdvances;
+                        }
+                        if (fontIndex != prevFontIndex) {
+                            // no kerning across fonts
+                            prev = 0;
+                            prevFontIndex = fontIndex;
+                        }
+
+                        float advance;
+                        if (surrogatePair) {
+                            advance = advances.getAdvance(codePoint);
+                            prev = 0;
+                            k++;
+                        } else {
+                            advance = advances.getAdvance(ch);
+                            if (prev != 0) {
+                                advance += advances.getKerning(prev, ch);
+                            }
+                            prev = ch;
+                        }
+
+                        if (ch == ' ' && breakable) {
+                            // trailing spaces are allowed to hang past the edge
+                            x += advance;
+                            candidate = (long) j << 32 | k;
+                            candidateX = x;
+                            continue;
+                        }
+
+                        if (x + advance + overhang > maxWidth && candidate >= 0) {
+                            if (breakCount == breaks.length) {
+                                breaks = Arrays.copyOf(breaks, breakCount * 2);
+                            }
+                            breaks[breakCount++] = candidate;
+                            x -= candidateX;
+                            candidate = -1;
+                        }
+                        x += advance;
+                    }
+                }
+                case ElementBuffer.TYPE_ICON -> {
+                    if (x + GameAssets.ICON_SIZE > maxWidth && candidate >= 0) {
+                        if (breakCount == breaks.length) {
+                            breaks = Arrays.copyOf(breaks, breakCount * 2);
+                        }
+                        breaks[breakCount++] = candidate;
+                        x -= candidateX;
+                        candidate = -1;
+                    }
+                    x += GameAssets.ICON_SIZE;
+                }
+                case ElementBuffer.TYPE_LINE_BREAK -> {
+                    x = 0;
+                    candidate = -1;
+                }
+            }
+        }
+
+        return breakCount == 0 ? NO_BREAKS : Arrays.copyOf(breaks, breakCount);
+    }
+}
@@ -16,24 +16,60 @@ import io.github.leo40git.sltbg.app.text.parse.ControlElementParser;
 import io.github.leo40git.sltbg.app.text.parse.ParsingUtils;
 import io.github.leo40git.sltbg.app.text.parse.TextScanner;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 public final class ColorControlElement extends Element {
-    private final @NotNull Color color;
+    public static final int NO_PALETTE_INDEX = -1;
+
+    // palette colors are only resolved when asked for, so that parsed elements stay valid
+    //  (and shareable) if the palette changes
+    private final int paletteIndex;
+    private final @Nullable Color color;
 
     public ColorControlElement(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
                                @NotNull Color color) {
+        this(sourceStart, sourceLength, NO_PALETTE_INDEX, color);
+    }
+
+    public ColorControlElement(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
+                               @Range(from = 0, to = GameAssets.PALETTE_SIZE - 1) int paletteIndex) {
+        this(sourceStart, sourceLength, checkPaletteIndex(paletteIndex), null);
+    }
+
+    private ColorControlElement(int sourceStart, int sourceLength, int paletteIndex, @Nullable Color color) {
         super(sourceStart, sourceLength);
+        this.paletteIndex = paletteIndex;
         this.color = color;
     }
 
+    private static int checkPaletteIndex(int paletteIndex) {
+        if (paletteIndex < 0 || paletteIndex >= GameAssets.PALETTE_SIZE) {
+            throw new IndexOutOfBoundsException("paletteIndex must be between 0 and %d (inclusive), but was %d"
+                    .formatted(GameAssets.PALETTE_SIZE - 1, paletteIndex));
+        }
+        return paletteIndex;
+    }
+
     @Override
     public boolean isControlElement() {
         return true;
     }
 
+    public boolean isPaletteColor() {
+        return paletteIndex != NO_PALETTE_INDEX;
+    }
+
+    public int getPaletteIndex() {
+        return paletteIndex;
+    }
+
     public @NotNull Color getColor() {
-        return color;
+        if (color != null) {
+            return color;
+        } else {
+            return GameAssets.getPaletteColor(paletteIndex);
+        }
     }
 
     @Override
@@ -41,47 +77,50 @@ public final class ColorControlElement extends Element {
         return "Control.Color{" +
                 "sourceStart=" + sourceStart +
                 ", sourceLength=" + sourceLength +
-                ", color=#%02X%02X%02X".formatted(color.getRed(), color.getGreen(), color.getBlue()) +
+                (color != null
+                        ? ", color=#%02X%02X%02X".formatted(color.getRed(), color.getGreen(), color.getBlue())
+                        : ", paletteIndex=" + paletteIndex) +
                 '}';
     }
 
     public static final class Parser implements ControlElementParser {
         @Override
         public @NotNull Element parse(@NotNull TextScanner scn, @Range(from = 0, to = Integer.MAX_VALUE) int sourceStart) {
-            String arg = ParsingUtils.getArgument(scn);
+            CharSequence arg = ParsingUtils.getArgumentSlice(scn);
             if (arg == null) {
-                return new ColorControlElement(sourceStart, 2, GameAssets.getPaletteColor(0));
+                return new ColorControlElement(sourceStart, 2, 0);
             }
 
-            Color color;
             try {
-                color = parseColorArgument(arg);
+                return parseColorArgument(sourceStart, 2 + 2 + arg.length(), arg);
             } catch (IllegalArgumentException e) {
                 return new ErrorElement(sourceStart, 2 + 2 + arg.length(), true,
                         "\\C: invalid argument: %s".formatted(e.getLocalizedMessage()));
             }
-
-            return new ColorControlElement(sourceStart, 2 + 2 + arg.length(), color);
         }
 
-        private static @NotNull Color parseColorArgument(@NotNull String arg) throws IllegalArgumentException {
-            if (arg.startsWith("#")) {
-                int hexLen = arg.length();
-                if (hexLen != 4 && hexLen != 7) {
-                    throw new IllegalArgumentException("Invalid hex color format, should be 3 or 6 chars long (but was %d)".formatted(hexLen));
+        private static @NotNull ColorControlElement parseColorArgument(int sourceStart, int sourceLength, @NotNull CharSequence arg)
+                throws IllegalArgumentException {
+            final int argLen = arg.length();
+            if (argLen > 0 && arg.charAt(0) == '#') {
+                if (argLen != 4 && argLen != 7) {
+                    throw new IllegalArgumentException("Invalid hex color format, should be 3 or 6 chars long (but was %d)".formatted(argLen));
                 }
 
-                if (hexLen == 4) {
-                    // expand CSS-style to standard
-                    char cr = arg.charAt(1), cg = arg.charAt(2), cb = arg.charAt(3);
-                    arg = "#" + cr + cr + cg + cg + cb + cb;
-                }
-
-                try {
-                    return Color.decode(arg);
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Failed to parse hex color", e);
+                int rgb = 0;
+                for (int i = 1; i < argLen; i++) {
+                    int digit = Character.digit(arg.charAt(i), 16);
+                    if (digit < 0) {
+                        throw new IllegalArgumentException("Failed to parse hex color");
+                    }
+                    if (argLen == 4) {
+                        // expand CSS-style to standard
+                        rgb = (rgb << 8) | (digit << 4) | digit;
+                    } else {
+                        rgb = (rgb << 4) | digit;
+                    }
                 }
+                return new ColorControlElement(sourceStart, sourceLength, new Color(rgb));
             } else {
                 int palIdx;
                 try {
@@ -91,9 +130,9 @@ public final class ColorControlElement extends Element {
                 }
                 if (palIdx >= GameAssets.PALETTE_SIZE) {
                     throw new IllegalArgumentException("Palette index is out of bounds (must be below %d, but was %d)"
-                            .formatted(palIdx, GameAssets.PALETTE_SIZE));
+                            .formatted(GameAssets.PALETTE_SIZE, palIdx));
                 }
-                return GameAssets.getPaletteColor(palIdx);
+                return new ColorControlElement(sourceStart, sourceLength, palIdx);
             }
         }
     }
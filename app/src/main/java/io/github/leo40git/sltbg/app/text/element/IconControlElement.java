@@ -9,19 +9,27 @@
 
 package io.github.leo40git.sltbg.app.text.element;
 
+import io.github.leo40git.sltbg.app.assets.GameAssets;
 import io.github.leo40git.sltbg.app.text.parse.ControlElementParser;
 import io.github.leo40git.sltbg.app.text.parse.ParsingUtils;
 import io.github.leo40git.sltbg.app.text.parse.TextScanner;
+import io.leo40git.sltbg.gamedata.IconSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Range;
 
 public final class IconControlElement extends Element {
+    // name is what was written in the source (either a number or a named icon), index is what it resolved to
     private final @NotNull String name;
+    private final int index;
 
     public IconControlElement(@Range(from = 0, to = Integer.MAX_VALUE) int sourceStart, @Range(from = 1, to = Integer.MAX_VALUE) int sourceLength,
-                              @NotNull String name) {
+                              @NotNull String name, @Range(from = 0, to = Integer.MAX_VALUE) int index) {
         super(sourceStart, sourceLength);
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index must be positive, but was %d".formatted(index));
+        }
         this.name = name;
+        this.index = index;
     }
 
     @Override
@@ -33,25 +41,55 @@ public final class IconControlElement extends Element {
         return name;
     }
 
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getIndex() {
+        return index;
+    }
+
     @Override
     public String toString() {
         return "Control.Icon{" +
                 "sourceStart=" + sourceStart +
                 ", sourceLength=" + sourceLength +
                 ", name='" + name + '\'' +
+                ", index=" + index +
                 '}';
     }
 
     public static final class Parser implements ControlElementParser {
         @Override
         public @NotNull Element parse(@NotNull TextScanner scn, @Range(from = 0, to = Integer.MAX_VALUE) int sourceStart) {
-            String name = ParsingUtils.getArgument(scn);
+            CharSequence name = ParsingUtils.getArgumentSlice(scn);
             if (name == null) {
                 return new ErrorElement(sourceStart, 2, true,
                         "\\I: missing required argument");
             }
 
-            return new IconControlElement(sourceStart, 2 + 2 + name.length(), name);
+            final int sourceLength = 2 + 2 + name.length();
+            final String nameStr = name.toString().trim();
+            if (!IconSet.isIndex(nameStr)) {
+                // indices always start with a digit and names never do
+                final int index = GameAssets.getIconIndex(nameStr);
+                if (index == IconSet.NO_ICON) {
+                    return new ErrorElement(sourceStart, sourceLength, true,
+                            "\\I: unknown icon name \"%s\"".formatted(nameStr));
+                }
+                return new IconControlElement(sourceStart, sourceLength, nameStr, index);
+            }
+
+            final int index;
+            try {
+                index = ParsingUtils.parseDecInt(name);
+            } catch (NumberFormatException e) {
+                return new ErrorElement(sourceStart, sourceLength, true,
+                        "\\I: invalid icon index: %s".formatted(e.getLocalizedMessage()));
+            }
+
+            if (index > GameAssets.getMaximumIconIndex()) {
+                return new ErrorElement(sourceStart, sourceLength, true,
+                        "\\I: icon index is out of bounds (must be at most %d, but was %d)"
+                                .formatted(GameAssets.getMaximumIconIndex(), index));
+            }
+            return new IconControlElement(sourceStart, sourceLength, nameStr, index);
         }
     }
 }
@@ -81,7 +81,8 @@ public abstract sealed class StyleControlElement extends Element {
     public static final class ResetParser implements ControlElementParser {
         @Override
         public @NotNull Element parse(@NotNull TextScanner scn, @Range(from = 0, to = Integer.MAX_VALUE) int sourceStart) {
-            return new Reset(sourceStart, 2);
+            // backslash plus "SR"
+            return new Reset(sourceStart, 3);
         }
     }
 }
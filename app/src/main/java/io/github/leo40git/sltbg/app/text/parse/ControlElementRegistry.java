@@ -9,8 +9,8 @@
 
 package io.github.leo40git.sltbg.app.text.parse;
 
-import java.util.HashMap;
-import java.util.IdentityHashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 
 import io.github.leo40git.sltbg.app.text.TextStyle;
 import io.github.leo40git.sltbg.app.text.element.ColorControlElement;
@@ -27,75 +27,141 @@ public final class ControlElementRegistry {
         throw new UnsupportedOperationException("ControlElementRegistry only contains static declarations.");
     }
 
-    private static final HashMap<Integer, IdentityHashMap<char[], ControlElementParser>> BACKING_MAP;
-    private static final int MAXIMUM_NAME_LENGTH;
-    private static final ThreadLocal<char[]> TL_BUFFER;
+    // guarded by the class monitor - lookups only ever see the immutable trie built from this
+    private static final LinkedHashMap<String, ControlElementParser> PARSERS = new LinkedHashMap<>();
+    private static volatile @NotNull Node root;
 
     static {
-        BACKING_MAP = new HashMap<>();
-        int l = 0;
+        registerBuiltin("C", new ColorControlElement.Parser());
 
-        l = register("C", new ColorControlElement.Parser(), l);
+        registerBuiltin("+", new SizeControlElement.Parser('+', 1));
+        registerBuiltin("-", new SizeControlElement.Parser('-', -1));
+        registerBuiltin("=", new SizeControlElement.ResetParser());
 
-        l = register("+", new SizeControlElement.Parser('+', 1), l);
-        l = register("-", new SizeControlElement.Parser('-', -1), l);
-        l = register("=", new SizeControlElement.ResetParser(), l);
-
-        l = register("SB", new StyleControlElement.ToggleParser(2, TextStyle.BOLD), l);
-        l = register("SI", new StyleControlElement.ToggleParser(2, TextStyle.ITALIC), l);
-        l = register("SU", new StyleControlElement.ToggleParser(2, TextStyle.UNDERLINE), l);
-        l = register("SS", new StyleControlElement.ToggleParser(2, TextStyle.STRIKETHROUGH), l);
-        l = register("SR", new StyleControlElement.ResetParser(), l);
+        registerBuiltin("SB", new StyleControlElement.ToggleParser(2, TextStyle.BOLD));
+        registerBuiltin("SI", new StyleControlElement.ToggleParser(2, TextStyle.ITALIC));
+        registerBuiltin("SU", new StyleControlElement.ToggleParser(2, TextStyle.UNDERLINE));
+        registerBuiltin("SS", new StyleControlElement.ToggleParser(2, TextStyle.STRIKETHROUGH));
+        registerBuiltin("SR", new StyleControlElement.ResetParser());
         // TODO style? (subscript, superscript)
 
-        l = register("I", new IconControlElement.Parser(), l);
+        registerBuiltin("I", new IconControlElement.Parser());
 
         // TODO animated??? (ani, rainbow)
 
-        MAXIMUM_NAME_LENGTH = l;
-        TL_BUFFER = ThreadLocal.withInitial(() -> new char[MAXIMUM_NAME_LENGTH]);
+        root = buildTrie();
     }
 
-    private static int register(@NotNull String name, @NotNull ControlElementParser parser, int maximumNameLength) {
-        char[] chars = name.toCharArray();
-        for (int i = 0; i < chars.length; i++) {
-            chars[i] = Character.toUpperCase(chars[i]);
-        }
-        BACKING_MAP.computeIfAbsent(chars.length, ignored -> new IdentityHashMap<>()).put(chars, parser);
-        return Math.max(chars.length, maximumNameLength);
+    private static void registerBuiltin(@NotNull String name, @NotNull ControlElementParser parser) {
+        PARSERS.put(normalizeName(name), parser);
     }
 
     public static void init() { /* clinit */ }
 
+    public static synchronized void register(@NotNull String name, @NotNull ControlElementParser parser) {
+        name = normalizeName(name);
+        if (PARSERS.containsKey(name)) {
+            throw new IllegalArgumentException("Control element \"%s\" is already registered".formatted(name));
+        }
+
+        PARSERS.put(name, parser);
+        root = buildTrie();
+    }
+
+    public static synchronized boolean isRegistered(@NotNull String name) {
+        return PARSERS.containsKey(normalizeName(name));
+    }
+
+    private static @NotNull String normalizeName(@NotNull String name) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("name cannot be empty");
+        }
+
+        // upper-cased one char at a time, the same way parse() does it, since whole-string upper-casing
+        //  can turn one char into several (e.g. sharp S into "SS") and the trie would never match it
+        var sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            sb.append(Character.toUpperCase(name.charAt(i)));
+        }
+        name = sb.toString();
+        if (name.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("name cannot contain line breaks");
+        }
+
+        // these are handled by TextParser itself, so a control element starting with them would never be reached
+        char first = name.charAt(0);
+        if (first == '\\' || first == 'U') {
+            throw new IllegalArgumentException("name cannot start with '%c'".formatted(first));
+        }
+
+        return name;
+    }
+
+    private static @NotNull Node buildTrie() {
+        var newRoot = new Node();
+        for (var entry : PARSERS.entrySet()) {
+            var node = newRoot;
+            for (char ch : entry.getKey().toCharArray()) {
+                node = node.getOrAddChild(ch);
+            }
+            node.parser = entry.getValue();
+        }
+        return newRoot;
+    }
+
     public static @Nullable Element parse(@NotNull TextScanner scn, @Range(from = 0, to = Integer.MAX_VALUE) int sourceStart) {
-        char[] buf = TL_BUFFER.get();
-        int maxNameLength = scn.peek(buf, 0, MAXIMUM_NAME_LENGTH);
-        if (maxNameLength == 0) {
-            return null;
+        // walk the trie for as long as we can, remembering the longest name that matched along the way
+        var node = root;
+        ControlElementParser match = null;
+        int matchLength = 0;
+        for (int i = 0, remaining = scn.remaining(); i < remaining; i++) {
+            node = node.getChild(Character.toUpperCase(scn.peek(i)));
+            if (node == null) {
+                break;
+            }
+
+            if (node.parser != null) {
+                match = node.parser;
+                matchLength = i + 1;
+            }
         }
 
-        for (int i = 0; i < maxNameLength; i++) {
-            buf[i] = Character.toUpperCase(buf[i]);
+        if (match == null) {
+            return null;
         }
 
-        for (int nameLength = maxNameLength; nameLength > 0; nameLength--) {
-            for (var entry : BACKING_MAP.get(nameLength).entrySet()) {
-                char[] nameChars = entry.getKey();
-                boolean match = true;
-                for (int i = 0; i < nameLength; i++) {
-                    if (nameChars[i] != buf[i]) {
-                        match = false;
-                        break;
-                    }
-                }
+        scn.skip(matchLength);
+        return match.parse(scn, sourceStart);
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
 
-                if (match) {
-                    scn.skip(nameLength);
-                    return entry.getValue().parse(scn, sourceStart);
+        // most nodes only have a handful of children, so a linear scan is fine here
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private @Nullable ControlElementParser parser;
+
+        public @Nullable Node getChild(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
                 }
             }
+            return null;
         }
 
-        return null;
+        public @NotNull Node getOrAddChild(char key) {
+            var child = getChild(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
     }
 }
@@ -18,40 +18,64 @@ public final class ParsingUtils {
         throw new UnsupportedOperationException("ParsingUtils only contains static declarations.");
     }
 
-    public static @Range(from = 0, to = Integer.MAX_VALUE) int parseDecInt(@NotNull String s) {
-        s = s.trim();
+    public static @Range(from = 0, to = Integer.MAX_VALUE) int parseDecInt(@NotNull CharSequence s) {
+        return parseInt(s, 0, s.length(), 10, "decimal");
+    }
 
-        if (s.isEmpty()) {
-            throw new NumberFormatException("Cannot parse empty string as number.");
-        }
+    public static @Range(from = 0, to = Integer.MAX_VALUE) int parseDecInt(@NotNull CharSequence s,
+                                                                           @Range(from = 0, to = Integer.MAX_VALUE) int start,
+                                                                           @Range(from = 0, to = Integer.MAX_VALUE) int end) {
+        return parseInt(s, start, end, 10, "decimal");
+    }
 
-        if (s.charAt(0) == '+') {
-            throw new NumberFormatException("Illegal leading plus sign on decimal string %s.".formatted(s));
-        }
+    public static @Range(from = 0, to = Integer.MAX_VALUE) int parseHexInt(@NotNull CharSequence s) {
+        return parseInt(s, 0, s.length(), 16, "hexadecimal");
+    }
 
-        return Integer.parseUnsignedInt(s, 10);
+    public static @Range(from = 0, to = Integer.MAX_VALUE) int parseHexInt(@NotNull CharSequence s,
+                                                                           @Range(from = 0, to = Integer.MAX_VALUE) int start,
+                                                                           @Range(from = 0, to = Integer.MAX_VALUE) int end) {
+        return parseInt(s, start, end, 16, "hexadecimal");
     }
 
-    public static @Range(from = 0, to = Integer.MAX_VALUE) int parseHexInt(@NotNull String s) {
-        s = s.trim();
+    private static int parseInt(@NotNull CharSequence s, int start, int end, int radix, @NotNull String kind) {
+        // same as String.trim(), but without creating a new string
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
 
-        if (s.isEmpty()) {
+        if (start == end) {
             throw new NumberFormatException("Cannot parse empty string as number.");
         }
 
-        if (s.charAt(0) == '+') {
-            throw new NumberFormatException("Illegal leading plus sign on hexadecimal string %s.".formatted(s));
+        if (s.charAt(start) == '+') {
+            throw new NumberFormatException("Illegal leading plus sign on %s string %s.".formatted(kind, s.subSequence(start, end)));
         }
 
-        return Integer.parseUnsignedInt(s, 16);
+        return Integer.parseUnsignedInt(s, start, end, radix);
     }
 
     public static @Nullable String getArgument(@NotNull TextScanner scn) {
+        CharSequence arg = getArgumentSlice(scn);
+        return arg == null ? null : arg.toString();
+    }
+
+    // the returned slice is a view into the scanner's source
+    public static @Nullable CharSequence getArgumentSlice(@NotNull TextScanner scn) {
         if (scn.peek() != '[') {
             return null;
         } else {
             scn.skip();
-            return scn.until(']');
+            // arguments can't span multiple lines
+            CharSequence arg = scn.untilSlice(']', '\n');
+            if (arg == null) {
+                // give back the '[' we ate
+                scn.rewind();
+            }
+            return arg;
         }
     }
 }
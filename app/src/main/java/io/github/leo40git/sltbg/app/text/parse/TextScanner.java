@@ -9,6 +9,8 @@
 
 package io.github.leo40git.sltbg.app.text.parse;
 
+import java.nio.CharBuffer;
+
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -17,11 +19,11 @@ import org.jetbrains.annotations.Range;
 public final class TextScanner {
     public static final char EOF = '\0';
 
-    private final String source;
+    private final CharSequence source;
     private final int offset, length;
     private int position;
 
-    public TextScanner(@NotNull String source, @Range(from = 0, to = Integer.MAX_VALUE) int offset, @Range(from = 0, to = Integer.MAX_VALUE) int length) {
+    public TextScanner(@NotNull CharSequence source, @Range(from = 0, to = Integer.MAX_VALUE) int offset, @Range(from = 0, to = Integer.MAX_VALUE) int length) {
         if (offset + length > source.length()) {
             throw new IllegalArgumentException("offset and length do not represent a valid range in source");
         }
@@ -33,7 +35,7 @@ public final class TextScanner {
         position = 0;
     }
 
-    public TextScanner(@NotNull String source) {
+    public TextScanner(@NotNull CharSequence source) {
         this(source, 0, source.length());
     }
 
@@ -90,7 +92,7 @@ public final class TextScanner {
     }
 
     public char peek(int delta) {
-        if (position + delta > length) {
+        if (position + delta >= length) {
             return EOF;
         } else {
             return source.charAt(offset + position + delta);
@@ -121,7 +123,7 @@ public final class TextScanner {
             return 0;
         }
 
-        source.getChars(this.offset + position, this.offset + position + length, buf, offset);
+        copyChars(this.offset + position, buf, offset, length);
         return length;
     }
 
@@ -154,12 +156,43 @@ public final class TextScanner {
         if (position + length > this.length) {
             return null;
         } else {
-            String result = source.substring(offset + position, offset + position + length);
+            String result = substring(offset + position, offset + position + length);
             skip(length);
             return result;
         }
     }
 
+    // checks if the next length characters can be read without running into stop (or the end of the source)
+    public boolean canRead(@Range(from = 0, to = Integer.MAX_VALUE) int length, char stop) {
+        if (position + length > this.length) {
+            return false;
+        }
+
+        final int start = offset + position;
+        for (int i = start, end = start + length; i < end; i++) {
+            if (source.charAt(i) == stop) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public @Nullable String read(int length, char stop) {
+        CharSequence slice = readSlice(length, stop);
+        return slice == null ? null : slice.toString();
+    }
+
+    public @Nullable CharSequence readSlice(int length, char stop) {
+        if (!canRead(length, stop)) {
+            return null;
+        }
+
+        final int start = offset + position;
+        skip(length);
+        return slice(start, start + length);
+    }
+
     public @Nullable String until(char terminator) {
         final int startPosition = position;
         char ch = peek();
@@ -174,10 +207,80 @@ public final class TextScanner {
         }
 
         if (ch == terminator) {
-            return source.substring(offset + startPosition, offset + position - 1);
+            return substring(offset + startPosition, offset + position - 1);
         } else {
             position = startPosition;
             return null;
         }
     }
+
+    public @Nullable String until(char terminator, char stop) {
+        CharSequence slice = untilSlice(terminator, stop);
+        return slice == null ? null : slice.toString();
+    }
+
+    public @Nullable CharSequence untilSlice(char terminator, char stop) {
+        final int start = offset + position, end = offset + length;
+        for (int i = start; i < end; i++) {
+            char ch = source.charAt(i);
+            if (ch == terminator) {
+                position = i + 1 - offset;
+                return slice(start, i);
+            } else if (ch == stop || ch == EOF) {
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    // appends everything up to the next stop character (or the end of the source) to sb in one go
+    public @Range(from = 0, to = Integer.MAX_VALUE) int appendRun(@NotNull StringBuilder sb, char stop1, char stop2) {
+        final int start = offset + position, end = offset + length;
+        int i = start;
+        while (i < end) {
+            char ch = source.charAt(i);
+            if (ch == stop1 || ch == stop2 || ch == EOF) {
+                break;
+            }
+            i++;
+        }
+
+        final int runLength = i - start;
+        if (runLength > 0) {
+            sb.append(source, start, i);
+            position += runLength;
+        }
+        return runLength;
+    }
+
+    // absolute index of the current position in the underlying source
+    public @Range(from = 0, to = Integer.MAX_VALUE) int getSourcePosition() {
+        return offset + position;
+    }
+
+    public @NotNull CharSequence getSource() {
+        return source;
+    }
+
+    private void copyChars(int srcBegin, char @NotNull [] dst, int dstBegin, int length) {
+        if (source instanceof String str) {
+            str.getChars(srcBegin, srcBegin + length, dst, dstBegin);
+        } else if (source instanceof StringBuilder sb) {
+            sb.getChars(srcBegin, srcBegin + length, dst, dstBegin);
+        } else {
+            for (int i = 0; i < length; i++) {
+                dst[dstBegin + i] = source.charAt(srcBegin + i);
+            }
+        }
+    }
+
+    private @NotNull String substring(int start, int end) {
+        return source.subSequence(start, end).toString();
+    }
+
+    // zero-copy view, only valid as long as source isn't modified
+    private @NotNull CharSequence slice(int start, int end) {
+        return start == end ? "" : CharBuffer.wrap(source, start, end);
+    }
 }
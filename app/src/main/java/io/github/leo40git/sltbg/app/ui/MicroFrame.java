@@ -11,7 +11,6 @@ package io.github.leo40git.sltbg.app.ui;
 
 import static io.github.leo40git.sltbg.app.Main.logger;
 
-import java.awt.AlphaComposite;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.event.ActionEvent;
@@ -44,9 +43,10 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 
 import io.github.leo40git.sltbg.app.BuildInfo;
 import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.export.AnimatedTextboxExporter;
+import io.github.leo40git.sltbg.app.export.TextboxExporter;
+import io.github.leo40git.sltbg.app.text.ElementBuffer;
 import io.github.leo40git.sltbg.app.text.TextParser;
-import io.github.leo40git.sltbg.app.text.TextRenderer;
-import io.github.leo40git.sltbg.app.text.element.ErrorElement;
 import io.github.leo40git.sltbg.app.util.DialogUtils;
 import io.github.leo40git.sltbg.app.util.StringUtils;
 
@@ -59,8 +59,9 @@ public final class MicroFrame extends JFrame {
     }
 
     private static final class ContentPane extends JPanel implements ChangeListener, ActionListener {
-        private final JCheckBox cbFaceEnabled;
+        private final JCheckBox cbFaceEnabled, cbAnimated;
         private final JComboBox<GameAssets.Face> cbFace;
+        private final JComboBox<AnimatedTextboxExporter.Format> cbFormat;
         private final JTextArea txtContent;
         private final JButton btnInfo, btnGenerate;
 
@@ -81,6 +82,15 @@ public final class MicroFrame extends JFrame {
             cbFace.setSelectedIndex(0);
             cbFace.setAlignmentX(LEFT_ALIGNMENT);
 
+            cbAnimated = new JCheckBox("Animate?", false);
+            cbAnimated.addChangeListener(this);
+            cbAnimated.setAlignmentX(LEFT_ALIGNMENT);
+
+            cbFormat = new JComboBox<>(AnimatedTextboxExporter.Format.values());
+            cbFormat.setSelectedItem(AnimatedTextboxExporter.Format.APNG);
+            cbFormat.setEnabled(false);
+            cbFormat.setAlignmentX(LEFT_ALIGNMENT);
+
             txtContent = new JTextArea(15, 25);
 
             btnInfo = new JButton("?");
@@ -92,6 +102,8 @@ public final class MicroFrame extends JFrame {
             var boxFace = new Box(BoxLayout.PAGE_AXIS);
             boxFace.add(cbFaceEnabled);
             boxFace.add(cbFace);
+            boxFace.add(cbAnimated);
+            boxFace.add(cbFormat);
 
             var pnlButtons = new JPanel(new BorderLayout());
             pnlButtons.add(btnInfo, BorderLayout.BEFORE_LINE_BEGINS);
@@ -106,6 +118,8 @@ public final class MicroFrame extends JFrame {
         public void stateChanged(ChangeEvent e) {
             if (e.getSource() == cbFaceEnabled) {
                 cbFace.setEnabled(cbFaceEnabled.isSelected());
+            } else if (e.getSource() == cbAnimated) {
+                cbFormat.setEnabled(cbAnimated.isSelected());
             }
         }
 
@@ -126,10 +140,10 @@ public final class MicroFrame extends JFrame {
             } else if (e.getSource() == btnGenerate) {
                 var errSB = new StringBuilder();
                 var elems = TextParser.parse(StringUtils.simplifyLineSeparators(txtContent.getText()), false);
-                for (var elem : elems) {
-                    if (elem instanceof ErrorElement err) {
-                        // TODO track actual line number as part of position (can't use LineBreakElements since you can escape newlines)
-                        errSB.append("%n- %s at position %d".formatted(err.getMessage(), err.getSourceStart()));
+                var positions = elems.getPositionIndex();
+                for (int i = 0, size = elems.size(); i < size; i++) {
+                    if (elems.getType(i) == ElementBuffer.TYPE_ERROR) {
+                        errSB.append("%n- %s at %s".formatted(elems.getErrorMessage(i), positions.describe(elems.getSourceStart(i))));
                     }
                 }
 
@@ -140,8 +154,18 @@ public final class MicroFrame extends JFrame {
                     return;
                 }
 
-                File sel = DialogUtils.fileSaveDialog(this, "Save textbox image",
-                        new FileNameExtensionFilter("PNG image files", "png"));
+                final boolean animated = cbAnimated.isSelected();
+                final var format = (AnimatedTextboxExporter.Format) Objects.requireNonNull(cbFormat.getSelectedItem());
+                FileNameExtensionFilter filter;
+                if (!animated) {
+                    filter = new FileNameExtensionFilter("PNG image files", "png");
+                } else {
+                    filter = switch (format) {
+                        case APNG -> new FileNameExtensionFilter("Animated PNG image files", "png");
+                        case GIF -> new FileNameExtensionFilter("Animated GIF image files", "gif");
+                    };
+                }
+                File sel = DialogUtils.fileSaveDialog(this, "Save textbox image", filter);
                 if (sel == null) {
                     return;
                 }
@@ -165,23 +189,19 @@ public final class MicroFrame extends JFrame {
                     }
                 }
 
-                final boolean drawFace = cbFaceEnabled.isSelected();
-                var image = new BufferedImage(GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
-                var g = image.createGraphics();
-                g.setComposite(AlphaComposite.SrcOver);
-                GameAssets.drawTextboxBackground(g, 0, 0);
-                if (drawFace) {
-                    g.drawImage(((GameAssets.Face) Objects.requireNonNull(cbFace.getSelectedItem())).image(), 12, 12, null);
-                    TextRenderer.render(g, 16 + GameAssets.FACE_SIZE + 12, 12, elems);
-                } else {
-                    TextRenderer.render(g, 16, 12, elems);
+                BufferedImage faceImage = null;
+                if (cbFaceEnabled.isSelected()) {
+                    faceImage = ((GameAssets.Face) Objects.requireNonNull(cbFace.getSelectedItem())).image();
                 }
-                GameAssets.drawTextboxBorder(g, 0, 0);
-                GameAssets.drawTextboxArrow(g, 0, 0);
-                g.dispose();
 
                 try {
-                    ImageIO.write(image, "png", sel);
+                    if (animated) {
+                        try (var out = Files.newOutputStream(sel.toPath())) {
+                            AnimatedTextboxExporter.create().export(elems, faceImage, format, out);
+                        }
+                    } else {
+                        ImageIO.write(TextboxExporter.export(elems, faceImage), "png", sel);
+                    }
                 } catch (IOException ex) {
                     logger().error("Error while saving image!", ex);
                     DialogUtils.showErrorDialog(this,
@@ -0,0 +1,303 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.app.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.InflaterInputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.export.AnimatedTextboxExporter;
+import io.github.leo40git.sltbg.app.text.TextParser;
+import io.github.leo40git.sltbg.app.text.TextRenderer;
+import io.github.leo40git.sltbg.app.text.TextReveal;
+import io.github.leo40git.sltbg.app.text.element.Element;
+import io.github.leo40git.sltbg.app.text.parse.ControlElementRegistry;
+import io.leo40git.sltbg.swing.RenderQuality;
+
+// decodes exported animations and checks every frame against redrawing the whole textbox from scratch
+public final class AnimatedTextboxExporterTest {
+    private static final int CHARACTER_DELAY = 30;
+    private static final int PROMPT_FRAME_DELAY = 250;
+    private static final int PROMPT_CYCLES = 2;
+
+    // GIF palettes are picked per frame, so colors are allowed to drift a bit (per channel, on average)
+    private static final double GIF_MAX_AVERAGE_ERROR = 4;
+
+    private static final String[] SAMPLES = {
+            "Hello, world!",
+            """
+                \\c[14]Melody
+                \\c[0]\\c[#FFF]\\c[#FFFFFF]\\
+                Bunny stew is\s
+                \\++++\\sb\\c[#BB2929]delicious!\\sb
+                \\si\\;\\si;""",
+            "Icons \\i[3] and \\i[17]; \\su underlined\\su \\ss struck\\sr plain \\-small\\= normal",
+            "    spaced    out    \n\n\\+\\+big"
+    };
+
+    public static void main(String[] args) throws IOException {
+        GameAssets.load();
+        ControlElementRegistry.init();
+        checkSamples();
+    }
+
+    private static void checkSamples() throws IOException {
+        final var face = new BufferedImage(GameAssets.FACE_SIZE, GameAssets.FACE_SIZE, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < face.getHeight(); y++) {
+            for (int x = 0; x < face.getWidth(); x++) {
+                face.setRGB(x, y, 0xFF000000 | (x * 2) << 16 | (y * 2) << 8 | 0x40);
+            }
+        }
+
+        final var exporter = AnimatedTextboxExporter.builder()
+                .setCharacterDelay(CHARACTER_DELAY)
+                .setPromptFrameDelay(PROMPT_FRAME_DELAY)
+                .setPromptCycles(PROMPT_CYCLES)
+                .build();
+
+        for (int i = 0; i < SAMPLES.length; i++) {
+            final var elems = TextParser.parse(SAMPLES[i], false);
+            for (var sampleFace : new BufferedImage[] { null, face }) {
+                final var expected = createExpectedTimeline(elems, sampleFace);
+                final String name = "sample %d (%s)".formatted(i, sampleFace == null ? "no face" : "face");
+
+                var out = new ByteArrayOutputStream();
+                exporter.export(elems, sampleFace, AnimatedTextboxExporter.Format.APNG, out);
+                report(name + ", APNG", compareApng(expected, decodeApng(out.toByteArray())));
+
+                out = new ByteArrayOutputStream();
+                exporter.export(elems, sampleFace, AnimatedTextboxExporter.Format.GIF, out);
+                report(name + ", GIF", compareGif(expected, decodeGif(out.toByteArray())));
+            }
+        }
+    }
+
+    private static void report(String name, String problem) {
+        System.out.format("%s: %s%n", name, problem == null ? "OK" : "MISMATCH (" + problem + ")");
+    }
+
+    private record Frame(int[] pixels, int delay) { }
+
+    // every distinct state the textbox goes through, each drawn from nothing, along with how long it stays up
+    private static List<Frame> createExpectedTimeline(List<Element> elems, BufferedImage face) {
+        final var reveal = TextReveal.of(TextRenderer.layout(elems));
+        final int textX = GameAssets.getTextboxTextX(face != null);
+
+        final var frames = new ArrayList<Frame>();
+        for (int step = 0; step <= reveal.getStepCount(); step++) {
+            addExpectedFrame(frames, drawTextbox(reveal, textX, face, step, false), CHARACTER_DELAY);
+        }
+        for (int cycle = 0; cycle < PROMPT_CYCLES; cycle++) {
+            // without a window skin, the prompt arrow just blinks
+            addExpectedFrame(frames, drawTextbox(reveal, textX, face, reveal.getStepCount(), true), PROMPT_FRAME_DELAY);
+            addExpectedFrame(frames, drawTextbox(reveal, textX, face, reveal.getStepCount(), false), PROMPT_FRAME_DELAY);
+        }
+        return frames;
+    }
+
+    private static void addExpectedFrame(List<Frame> frames, int[] pixels, int delay) {
+        if (!frames.isEmpty()) {
+            final var last = frames.get(frames.size() - 1);
+            if (Arrays.equals(last.pixels(), pixels)) {
+                frames.set(frames.size() - 1, new Frame(pixels, last.delay() + delay));
+                return;
+            }
+        }
+        frames.add(new Frame(pixels, delay));
+    }
+
+    private static int[] drawTextbox(TextReveal reveal, int textX, BufferedImage face, int stepCount, boolean arrow) {
+        final var image = new BufferedImage(GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        final var g = image.createGraphics();
+        try {
+            RenderQuality.FINAL.applyImageHints(g);
+            GameAssets.drawTextboxBackground(g, 0, 0);
+            if (face != null) {
+                g.drawImage(face, GameAssets.TEXTBOX_FACE_X, GameAssets.TEXTBOX_FACE_Y, null);
+            }
+            reveal.render(g, textX, GameAssets.TEXTBOX_TEXT_Y, stepCount, RenderQuality.FINAL);
+            GameAssets.drawTextboxBorder(g, 0, 0);
+            if (arrow) {
+                GameAssets.drawTextboxArrow(g, 0, 0);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static String compareApng(List<Frame> expected, List<Frame> actual) {
+        if (expected.size() != actual.size()) {
+            return "expected %d frames, got %d".formatted(expected.size(), actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!Arrays.equals(expected.get(i).pixels(), actual.get(i).pixels())) {
+                return "frame %d differs".formatted(i);
+            }
+            if (expected.get(i).delay() != actual.get(i).delay()) {
+                return "frame %d should last %d ms, but lasts %d ms".formatted(i, expected.get(i).delay(), actual.get(i).delay());
+            }
+        }
+        return null;
+    }
+
+    private static String compareGif(List<Frame> expected, List<Frame> actual) {
+        if (expected.size() != actual.size()) {
+            return "expected %d frames, got %d".formatted(expected.size(), actual.size());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            final int[] expectedPixels = expected.get(i).pixels(), actualPixels = actual.get(i).pixels();
+            long error = 0;
+            for (int j = 0; j < expectedPixels.length; j++) {
+                // GIFs can't do translucency, so it gets rounded
+                final int e = (expectedPixels[j] >>> 24) >= 0x80 ? expectedPixels[j] | 0xFF000000 : 0;
+                final int a = actualPixels[j];
+                if ((e >>> 24) != (a >>> 24)) {
+                    return "frame %d has the wrong transparency at (%d, %d)"
+                            .formatted(i, j % GameAssets.TEXTBOX_WIDTH, j / GameAssets.TEXTBOX_WIDTH);
+                }
+                for (int shift = 0; shift < 24; shift += 8) {
+                    error += Math.abs((e >>> shift & 0xFF) - (a >>> shift & 0xFF));
+                }
+            }
+            final double averageError = (double) error / (expectedPixels.length * 3);
+            if (averageError > GIF_MAX_AVERAGE_ERROR) {
+                return "frame %d is off by %.2f per channel on average".formatted(i, averageError);
+            }
+            // GIF delays are in hundredths of a second
+            final int expectedDelay = (expected.get(i).delay() + 5) / 10;
+            if (expectedDelay != actual.get(i).delay()) {
+                return "frame %d should last %d cs, but lasts %d cs".formatted(i, expectedDelay, actual.get(i).delay());
+            }
+        }
+        return null;
+    }
+
+    // just enough of an APNG decoder to read back what the exporter writes: 8-bit RGBA, no interlacing,
+    //  never disposing and always replacing the frame's area
+    // delays are returned in milliseconds
+    private static List<Frame> decodeApng(byte[] data) throws IOException {
+        final var in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipNBytes(8);
+
+        final var frames = new ArrayList<Frame>();
+        int[] canvas = null;
+        int canvasWidth = 0;
+        int frameX = 0, frameY = 0, frameWidth = 0, frameHeight = 0, delay = 0;
+        while (true) {
+            final int length = in.readInt();
+            final String type = new String(in.readNBytes(4));
+            final byte[] chunk = in.readNBytes(length);
+            in.skipNBytes(4); // CRC
+            final var chunkIn = new DataInputStream(new ByteArrayInputStream(chunk));
+            switch (type) {
+                case "IHDR" -> {
+                    canvasWidth = chunkIn.readInt();
+                    canvas = new int[canvasWidth * chunkIn.readInt()];
+                }
+                case "fcTL" -> {
+                    chunkIn.skipNBytes(4); // sequence number
+                    frameWidth = chunkIn.readInt();
+                    frameHeight = chunkIn.readInt();
+                    frameX = chunkIn.readInt();
+                    frameY = chunkIn.readInt();
+                    final int delayNum = chunkIn.readUnsignedShort();
+                    final int delayDen = chunkIn.readUnsignedShort();
+                    delay = delayNum * 1000 / (delayDen == 0 ? 100 : delayDen);
+                }
+                case "IDAT", "fdAT" -> {
+                    final int offset = type.equals("fdAT") ? 4 : 0;
+                    final byte[] raw = new InflaterInputStream(new ByteArrayInputStream(chunk, offset, chunk.length - offset))
+                            .readAllBytes();
+                    final int stride = frameWidth * 4;
+                    byte[] previous = new byte[stride], row = new byte[stride];
+                    for (int y = 0; y < frameHeight; y++) {
+                        unfilter(raw, y * (stride + 1), previous, row);
+                        for (int x = 0; x < frameWidth; x++) {
+                            canvas[(frameY + y) * canvasWidth + frameX + x] = (row[x * 4 + 3] & 0xFF) << 24
+                                    | (row[x * 4] & 0xFF) << 16 | (row[x * 4 + 1] & 0xFF) << 8 | (row[x * 4 + 2] & 0xFF);
+                        }
+                        final byte[] swap = previous;
+                        previous = row;
+                        row = swap;
+                    }
+                    frames.add(new Frame(canvas.clone(), delay));
+                }
+                case "IEND" -> {
+                    return frames;
+                }
+            }
+        }
+    }
+
+    private static void unfilter(byte[] raw, int start, byte[] previous, byte[] row) {
+        final int filter = raw[start];
+        for (int i = 0; i < row.length; i++) {
+            final int left = i >= 4 ? row[i - 4] & 0xFF : 0;
+            final int up = previous[i] & 0xFF;
+            final int upLeft = i >= 4 ? previous[i - 4] & 0xFF : 0;
+            final int predictor = switch (filter) {
+                case 1 -> left;
+                case 2 -> up;
+                case 3 -> (left + up) >>> 1;
+                case 4 -> {
+                    final int p = left + up - upLeft;
+                    final int pLeft = Math.abs(p - left), pUp = Math.abs(p - up), pUpLeft = Math.abs(p - upLeft);
+                    yield pLeft <= pUp && pLeft <= pUpLeft ? left : pUp <= pUpLeft ? up : upLeft;
+                }
+                default -> 0;
+            };
+            row[i] = (byte) (raw[start + 1 + i] + predictor);
+        }
+    }
+
+    // delays are returned in hundredths of a second
+    private static List<Frame> decodeGif(byte[] data) throws IOException {
+        final var reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (var in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            reader.setInput(in);
+
+            final var frames = new ArrayList<Frame>();
+            final int[] canvas = new int[GameAssets.TEXTBOX_WIDTH * GameAssets.TEXTBOX_HEIGHT];
+            for (int i = 0, count = reader.getNumImages(true); i < count; i++) {
+                final var image = reader.read(i);
+                final var root = (IIOMetadataNode) reader.getImageMetadata(i).getAsTree("javax_imageio_gif_image_1.0");
+                final var descriptor = (IIOMetadataNode) root.getElementsByTagName("ImageDescriptor").item(0);
+                final var control = (IIOMetadataNode) root.getElementsByTagName("GraphicControlExtension").item(0);
+                final int frameX = Integer.parseInt(descriptor.getAttribute("imageLeftPosition"));
+                final int frameY = Integer.parseInt(descriptor.getAttribute("imageTopPosition"));
+
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        final int pixel = image.getRGB(x, y);
+                        // transparent pixels leave whatever was there before alone
+                        if ((pixel >>> 24) != 0) {
+                            canvas[(frameY + y) * GameAssets.TEXTBOX_WIDTH + frameX + x] = pixel;
+                        }
+                    }
+                }
+                frames.add(new Frame(canvas.clone(), Integer.parseInt(control.getAttribute("delayTime"))));
+            }
+            return frames;
+        } finally {
+            reader.dispose();
+        }
+    }
+}
@@ -10,11 +10,16 @@
 package io.github.leo40git.sltbg.app.test;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
 
 import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.text.ElementBuffer;
+import io.github.leo40git.sltbg.app.text.TextEdit;
 import io.github.leo40git.sltbg.app.text.TextParser;
 import io.github.leo40git.sltbg.app.text.element.LineBreakElement;
 import io.github.leo40git.sltbg.app.text.parse.ControlElementRegistry;
+import io.leo40git.sltbg.gamedata.IconSet;
 
 public final class TextParserTest {
     public static void main(String[] args) {
@@ -22,6 +27,7 @@ public final class TextParserTest {
 
         GameAssets.setPaletteColor(0, Color.WHITE);
         GameAssets.setPaletteColor(14, new Color(255, 241, 120));
+        GameAssets.setIconSet(new IconSet(new BufferedImage(GameAssets.ICON_SHEET_WIDTH, GameAssets.ICON_SIZE, BufferedImage.TYPE_INT_ARGB)));
 
         String source = """
                 \\c[14]Melody
@@ -36,6 +42,111 @@ public final class TextParserTest {
 
         System.out.println(" === preserveInvisible is true  === ");
         dumpElements(source, true);
+        System.out.println();
+
+        System.out.println(" === icons === ");
+        dumpElements("\\i[3]\\i[ 15 ]\\i[16]\\i[coin]\\i[99999999999]", false);
+        System.out.println();
+
+        System.out.println(" === incremental re-parse === ");
+        checkIncremental(source, TextEdit.insert(source.indexOf("stew"), "\\c[14]"), true);
+        checkIncremental(source, TextEdit.remove(source.indexOf("\\\n"), 1), false);
+        checkIncremental(source, new TextEdit(source.indexOf("\\si"), 3, "\\su\n"), true);
+        checkIncrementalEquivalence(source, false, 1, 5000);
+        checkIncrementalEquivalence(source, true, 2, 5000);
+    }
+
+    private static void checkIncremental(String source, TextEdit edit, boolean preserveInvisible) {
+        var previous = TextParser.parse(source, preserveInvisible);
+        String newSource = edit.apply(source);
+        var expected = TextParser.parse(newSource, preserveInvisible);
+        var actual = TextParser.parse(newSource, preserveInvisible, previous, edit);
+        System.out.format("%s: %s%n", edit, expected.toString().equals(actual.toString()) ? "OK" : "MISMATCH");
+        if (!expected.toString().equals(actual.toString())) {
+            dumpElements(newSource, preserveInvisible);
+            System.out.println(actual);
+        }
+    }
+
+    // bits of source that are likely to change how whatever's around them gets parsed
+    private static final String[] FRAGMENTS = {
+            "\\", "\\\\", "\\\n", "\n", "[", "]", "#", "c[", "\\c[14]", "\\c[#FFF]", "\\c[#BB2929]", "\\c[",
+            "\\i[3]", "\\i[coin]", "\\i[", "\\+", "\\-", "\\++", "\\sb", "\\si", "\\sr", "\\s", "\\;",
+            "\\u00e9", "\\u00", "\\U0001F600", "\\U0001", "x", " ", "stew", "\\!"
+    };
+
+    // runs lots of random edits through incremental re-parsing, each one on top of the result of the last,
+    //  and checks every result against parsing the edited source from scratch
+    private static void checkIncrementalEquivalence(String source, boolean preserveInvisible, long seed, int editCount) {
+        final var rnd = new Random(seed);
+        var current = TextParser.parse(source, preserveInvisible);
+        int mismatches = 0;
+        for (int i = 0; i < editCount; i++) {
+            final var edit = randomEdit(rnd, source);
+            final String newSource = edit.apply(source);
+            final var expected = TextParser.parse(newSource, preserveInvisible);
+            current = TextParser.parse(newSource, preserveInvisible, current, edit);
+            if (!isSameParse(expected, current)) {
+                if (mismatches++ == 0) {
+                    System.out.format("first mismatch at edit %d, %s on:%n%s%n", i, edit, source);
+                    dumpElements(newSource, preserveInvisible);
+                    System.out.println(current);
+                }
+                // carry on from a correct parse, so one mismatch doesn't cause all the others
+                current = expected;
+            }
+            source = newSource;
+        }
+        System.out.format("%d random edits with preserveInvisible %b: %s%n", editCount, preserveInvisible,
+                mismatches == 0 ? "OK" : mismatches + " MISMATCH(ES)");
+    }
+
+    private static TextEdit randomEdit(Random rnd, String source) {
+        final int length = source.length();
+        final int offset = switch (rnd.nextInt(6)) {
+            case 0 -> 0;
+            case 1 -> length;
+            case 2 -> {
+                // start of a line
+                final int lineBreak = length == 0 ? -1 : source.lastIndexOf('\n', rnd.nextInt(length));
+                yield lineBreak + 1;
+            }
+            case 3 -> {
+                // inside (or right after) an escape or control element
+                final int backslash = length == 0 ? -1 : source.indexOf('\\', rnd.nextInt(length));
+                yield backslash < 0 ? rnd.nextInt(length + 1) : Math.min(length, backslash + 1 + rnd.nextInt(4));
+            }
+            case 4 -> {
+                // at a line break, so removing it merges two lines
+                final int lineBreak = length == 0 ? -1 : source.indexOf('\n', rnd.nextInt(length));
+                yield lineBreak < 0 ? rnd.nextInt(length + 1) : lineBreak;
+            }
+            default -> rnd.nextInt(length + 1);
+        };
+
+        // keep the source from growing forever
+        final int maxRemoved = length - offset;
+        final int removed = maxRemoved == 0 || (length < 200 && rnd.nextBoolean()) ? 0 : 1 + rnd.nextInt(Math.min(maxRemoved, 8));
+        final String inserted = length > 200 || rnd.nextInt(4) == 0 ? "" : FRAGMENTS[rnd.nextInt(FRAGMENTS.length)];
+        return new TextEdit(offset, removed, inserted);
+    }
+
+    private static boolean isSameParse(ElementBuffer expected, ElementBuffer actual) {
+        if (!expected.toString().equals(actual.toString())) {
+            return false;
+        }
+
+        final var expectedLines = expected.getPositionIndex();
+        final var actualLines = actual.getPositionIndex();
+        if (expectedLines.getLineCount() != actualLines.getLineCount()) {
+            return false;
+        }
+        for (int line = 0; line < expectedLines.getLineCount(); line++) {
+            if (expectedLines.getLineStart(line) != actualLines.getLineStart(line)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private static void dumpElements(String source, boolean preserveInvisible) {
@@ -0,0 +1,55 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import io.github.leo40git.sltbg.app.text.parse.ControlElementRegistry;
+import io.github.leo40git.sltbg.app.text.parse.TextScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControlElementRegistryBenchmark {
+    @Param({"UNICODE_ESCAPES", "CONTROL_DENSE", "LONG_PAGE"})
+    public Corpus corpus;
+
+    private String source;
+    private int[] backslashes;
+
+    @Setup
+    public void setup() {
+        ControlElementRegistry.init();
+        source = corpus.getText();
+        backslashes = IntStream.range(0, source.length())
+                .filter(i -> source.charAt(i) == '\\')
+                .toArray();
+    }
+
+    // looks up every backslash in the corpus, hits and misses alike (just like the parser does)
+    @Benchmark
+    public void lookup(Blackhole bh) {
+        final var scn = new TextScanner(source);
+        for (int start : backslashes) {
+            scn.seek(start + 1);
+            bh.consume(ControlElementRegistry.parse(scn, start));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.benchmarks;
+
+import java.util.Random;
+
+import org.jetbrains.annotations.NotNull;
+
+// representative inputs for the text pipeline, generated with a fixed seed so runs are comparable
+public enum Corpus {
+    PROSE {
+        @Override
+        void append(@NotNull StringBuilder sb, @NotNull Random rnd) {
+            appendWords(sb, rnd, 8 + rnd.nextInt(8));
+            sb.append(". ");
+        }
+    },
+    UNICODE_ESCAPES {
+        @Override
+        void append(@NotNull StringBuilder sb, @NotNull Random rnd) {
+            appendWords(sb, rnd, 1 + rnd.nextInt(3));
+            switch (rnd.nextInt(5)) {
+                case 0 -> sb.append("\\u%04x".formatted(0xC0 + rnd.nextInt(0x180)));
+                case 1 -> sb.append("\\U%08X".formatted(0x1F600 + rnd.nextInt(0x50)));
+                case 2 -> sb.append("\\\\");
+                case 3 -> sb.append("\\u2665\\u2666");
+                default -> sb.append("caf\\u00e9 ");
+            }
+            sb.append(' ');
+        }
+    },
+    CONTROL_DENSE {
+        @Override
+        void append(@NotNull StringBuilder sb, @NotNull Random rnd) {
+            switch (rnd.nextInt(9)) {
+                case 0 -> sb.append("\\C[").append(rnd.nextInt(32)).append(']');
+                case 1 -> sb.append("\\C[#%06X]".formatted(rnd.nextInt(0x1000000)));
+                case 2 -> sb.append("\\C[#%03x]".formatted(rnd.nextInt(0x1000)));
+                case 3 -> sb.append("\\I[").append(rnd.nextInt(16)).append(']');
+                case 4 -> sb.append("\\SB");
+                case 5 -> sb.append("\\si;");
+                case 6 -> sb.append(rnd.nextBoolean() ? "\\+" : "\\-");
+                case 7 -> sb.append("\\SR\\=");
+                default -> sb.append("\\C\\;");
+            }
+            appendWords(sb, rnd, 1);
+        }
+    },
+    LONG_PAGE {
+        @Override
+        void append(@NotNull StringBuilder sb, @NotNull Random rnd) {
+            switch (rnd.nextInt(4)) {
+                case 0 -> CONTROL_DENSE.append(sb, rnd);
+                case 1 -> UNICODE_ESCAPES.append(sb, rnd);
+                default -> PROSE.append(sb, rnd);
+            }
+            sb.append(rnd.nextInt(8) == 0 ? "\\\n" : "\n");
+        }
+
+        @Override
+        int targetLength() {
+            return 64 * 1024;
+        }
+    };
+
+    private static final String[] WORDS = {
+            "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "and", "then",
+            "sleeps", "until", "morning", "comes", "again", "with", "a", "cup", "of", "tea"
+    };
+
+    private String text;
+
+    abstract void append(@NotNull StringBuilder sb, @NotNull Random rnd);
+
+    int targetLength() {
+        return 4 * 1024;
+    }
+
+    public synchronized @NotNull String getText() {
+        if (text == null) {
+            final var rnd = new Random(0x5_17B6L + ordinal());
+            final var sb = new StringBuilder(targetLength() + 64);
+            while (sb.length() < targetLength()) {
+                append(sb, rnd);
+            }
+            text = sb.toString();
+        }
+        return text;
+    }
+
+    private static void appendWords(@NotNull StringBuilder sb, @NotNull Random rnd, int count) {
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+    }
+}
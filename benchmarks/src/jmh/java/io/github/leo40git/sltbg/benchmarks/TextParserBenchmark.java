@@ -0,0 +1,100 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.leo40git.sltbg.app.text.ElementBuffer;
+import io.github.leo40git.sltbg.app.text.ElementSink;
+import io.github.leo40git.sltbg.app.text.TextParser;
+import io.github.leo40git.sltbg.app.text.element.Element;
+import io.github.leo40git.sltbg.app.text.element.InvisibleControlElement;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TextParserBenchmark {
+    @Param({"PROSE", "UNICODE_ESCAPES", "CONTROL_DENSE", "LONG_PAGE"})
+    public Corpus corpus;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = corpus.getText();
+    }
+
+    @Benchmark
+    public ElementBuffer parse() {
+        return TextParser.parse(source, false);
+    }
+
+    @Benchmark
+    public ElementBuffer parsePreserveInvisible() {
+        return TextParser.parse(source, true);
+    }
+
+    @Benchmark
+    public void parseToSink(Blackhole bh) {
+        TextParser.parse(source, false, new BlackholeSink(bh));
+    }
+
+    // consumes everything without materializing elements, so this measures the parser on its own
+    private record BlackholeSink(@NotNull Blackhole bh) implements ElementSink {
+        @Override
+        public void element(@NotNull Element elem) {
+            bh.consume(elem);
+        }
+
+        @Override
+        public void text(int sourceStart, int sourceLength, @NotNull CharSequence contents) {
+            bh.consume(sourceStart);
+            bh.consume(contents.length());
+        }
+
+        @Override
+        public void escapedText(int sourceStart, int sourceLength, @NotNull String contents) {
+            bh.consume(sourceStart);
+            bh.consume(contents);
+        }
+
+        @Override
+        public void lineBreak(int sourcePosition) {
+            bh.consume(sourcePosition);
+        }
+
+        @Override
+        public void invisible(int sourceStart, int sourceLength, InvisibleControlElement.@NotNull Type type) {
+            bh.consume(sourceStart);
+            bh.consume(type);
+        }
+
+        @Override
+        public void error(int sourceStart, int sourceLength, boolean isControlElement, @NotNull String message) {
+            bh.consume(sourceStart);
+            bh.consume(message);
+        }
+
+        @Override
+        public void lineStart(int sourcePosition) {
+            bh.consume(sourcePosition);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.github.leo40git.sltbg.app.assets.GameAssets;
+import io.github.leo40git.sltbg.app.export.AnimatedTextboxExporter;
+import io.github.leo40git.sltbg.app.export.TextboxExporter;
+import io.github.leo40git.sltbg.app.text.ElementBuffer;
+import io.github.leo40git.sltbg.app.text.TextLayoutPlan;
+import io.github.leo40git.sltbg.app.text.TextMeasurement;
+import io.github.leo40git.sltbg.app.text.TextParser;
+import io.github.leo40git.sltbg.app.text.TextRenderProgram;
+import io.github.leo40git.sltbg.app.text.TextRenderer;
+import io.leo40git.sltbg.swing.RenderQuality;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// needs the same "assets" folder in the working directory that the app itself does
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TextRendererBenchmark {
+    @Param({"PROSE", "UNICODE_ESCAPES", "CONTROL_DENSE", "LONG_PAGE"})
+    public Corpus corpus;
+
+    private ElementBuffer elems;
+    private TextLayoutPlan plan;
+    private TextRenderProgram program;
+    private AnimatedTextboxExporter animatedExporter;
+    private BufferedImage image;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() throws IOException {
+        GameAssets.load();
+        elems = TextParser.parse(corpus.getText(), false);
+        plan = TextRenderer.layout(elems);
+        program = TextRenderProgram.compile(plan);
+        animatedExporter = AnimatedTextboxExporter.create();
+        image = new BufferedImage(GameAssets.TEXTBOX_WIDTH, GameAssets.TEXTBOX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        g = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        TextRenderer.render(g, 0, 0, elems);
+        return image;
+    }
+
+    @Benchmark
+    public TextLayoutPlan layout() {
+        return TextRenderer.layout(elems);
+    }
+
+    @Benchmark
+    public TextLayoutPlan layoutWrapped() {
+        return TextRenderer.layout(elems, GameAssets.getTextboxTextWidth(true));
+    }
+
+    @Benchmark
+    public BufferedImage renderPlan() {
+        TextRenderer.render(g, 0, 0, plan);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage renderProgram() {
+        TextRenderer.render(g, 0, 0, program);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage renderProgramDraft() {
+        TextRenderer.render(g, 0, 0, program, RenderQuality.DRAFT);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage[] exportScaled() {
+        return TextboxExporter.exportScaled(elems, null, 1, 2, 3);
+    }
+
+    @Benchmark
+    public int exportAnimated() throws IOException {
+        final var out = new ByteArrayOutputStream();
+        animatedExporter.export(elems, null, AnimatedTextboxExporter.Format.APNG, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public TextMeasurement measure() {
+        return TextRenderer.measure(elems, true);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import io.github.leo40git.sltbg.app.text.parse.TextScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TextScannerBenchmark {
+    @Param({"PROSE", "UNICODE_ESCAPES", "CONTROL_DENSE", "LONG_PAGE"})
+    public Corpus corpus;
+
+    private String source;
+    private int[] argumentStarts;
+    private StringBuilder sb;
+
+    @Setup
+    public void setup() {
+        source = corpus.getText();
+        // positions right after every '[', where \C and \I start reading their arguments
+        argumentStarts = IntStream.range(0, source.length())
+                .filter(i -> source.charAt(i) == '[')
+                .map(i -> i + 1)
+                .toArray();
+        sb = new StringBuilder(source.length());
+    }
+
+    @Benchmark
+    public int readChars() {
+        final var scn = new TextScanner(source);
+        int sum = 0;
+        char ch;
+        while ((ch = scn.read()) != TextScanner.EOF) {
+            sum += ch;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int appendRuns() {
+        final var scn = new TextScanner(source);
+        sb.setLength(0);
+        do {
+            scn.appendRun(sb, '\\', '\n');
+        } while (scn.read() != TextScanner.EOF);
+        return sb.length();
+    }
+
+    @Benchmark
+    public void argumentSlices(Blackhole bh) {
+        final var scn = new TextScanner(source);
+        for (int start : argumentStarts) {
+            scn.seek(start);
+            bh.consume(scn.untilSlice(']', '\n'));
+        }
+    }
+}
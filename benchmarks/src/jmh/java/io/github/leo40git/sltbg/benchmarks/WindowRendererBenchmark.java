@@ -0,0 +1,101 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.github.leo40git.sltbg.benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.leo40git.sltbg.gamedata.window.WindowTone;
+import io.leo40git.sltbg.gamedata.window.WindowVersion;
+import io.leo40git.sltbg.swing.gamedata.window.WindowBackgroundCache;
+import io.leo40git.sltbg.swing.gamedata.window.WindowRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// uses a skin full of noise, window rendering doesn't care what the skin actually looks like
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WindowRendererBenchmark {
+    private static final WindowTone TONE = new WindowTone(-34, 20, 68);
+
+    @Param({"VX_VXA", "MV"})
+    public WindowVersion version;
+
+    // a textbox, and a full screen window on MV/MZ's default resolution
+    @Param({"816x180", "1632x1248"})
+    public String size;
+
+    private WindowBackgroundCache backgroundCache;
+    private WindowRenderer renderer;
+    private int width, height;
+    private BufferedImage image;
+    private Graphics2D g;
+
+    @Setup
+    public void setup() {
+        final int skinSize = version.scale(128);
+        final var skin = new BufferedImage(skinSize, skinSize, BufferedImage.TYPE_INT_ARGB);
+        final var random = new Random(0);
+        for (int y = 0; y < skinSize; y++) {
+            for (int x = 0; x < skinSize; x++) {
+                skin.setRGB(x, y, random.nextInt());
+            }
+        }
+        backgroundCache = new WindowBackgroundCache();
+        renderer = new WindowRenderer(version, skin, TONE, 0.75f, backgroundCache);
+
+        final int split = size.indexOf('x');
+        width = Integer.parseInt(size.substring(0, split));
+        height = Integer.parseInt(size.substring(split + 1));
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        g = image.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintBackground() {
+        renderer.paintBackground(g, 0, 0, width, height, null);
+        return image;
+    }
+
+    // measures compositing the background from scratch every time
+    @Benchmark
+    public BufferedImage paintBackgroundUncached() {
+        backgroundCache.invalidateAll();
+        renderer.paintBackground(g, 0, 0, width, height, null);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        renderer.paintFrame(g, 0, 0, width, height, null);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintRenderedWindow() {
+        g.drawImage(renderer.renderWindow(width, height, 0), 0, 0, null);
+        return image;
+    }
+}
@@ -12,21 +12,32 @@ package io.leo40git.sltbg.gamedata;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
+import io.leo40git.sltbg.json.MalformedJsonException;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
-// TODO replace with rich version that supports icon names
-@Deprecated
+import org.quiltmc.json5.JsonReader;
+
+// icons can be referred to by their index in the sheet, or by name if they've been given one
 public final class IconSet {
     public static final int ICON_SIZE = 24;
+    public static final int NO_ICON = -1;
 
     private final @NotNull BufferedImage sheet;
     private final int iconsPerRow, maximumIconIndex;
+    private final @NotNull Map<String, Integer> names;
 
     public IconSet(@NotNull BufferedImage sheet) {
+        this(sheet, Map.of());
+    }
+
+    public IconSet(@NotNull BufferedImage sheet, @NotNull Map<String, Integer> names) {
         if (sheet.getWidth() % ICON_SIZE != 0 || sheet.getHeight() % ICON_SIZE != 0) {
             throw new IllegalArgumentException("sheet's dimensions (%d x %d) are not divisible by icon size (%d)"
                     .formatted(sheet.getWidth(), sheet.getHeight(), ICON_SIZE));
@@ -36,6 +47,33 @@ public final class IconSet {
 
         iconsPerRow = sheet.getWidth() / ICON_SIZE;
         maximumIconIndex = (sheet.getHeight() / ICON_SIZE) * iconsPerRow - 1;
+
+        for (var entry : names.entrySet()) {
+            if (!isValidIconName(entry.getKey())) {
+                throw new IllegalArgumentException("\"%s\" is not a valid icon name (can't be blank or start with a digit)"
+                        .formatted(entry.getKey()));
+            }
+            final int index = entry.getValue();
+            if (index < 0 || index > maximumIconIndex) {
+                throw new IllegalArgumentException("%s: icon index is out of bounds (must be between 0 and %d, but was %d)"
+                        .formatted(entry.getKey(), maximumIconIndex, index));
+            }
+        }
+        this.names = Map.copyOf(names);
+    }
+
+    // names can't start with a digit, so that they can never be mistaken for an index
+    public static boolean isValidIconName(@NotNull String name) {
+        return !name.isBlank() && !isIndex(name);
+    }
+
+    public static boolean isIndex(@NotNull CharSequence nameOrIndex) {
+        if (nameOrIndex.length() == 0) {
+            return false;
+        }
+
+        final char first = nameOrIndex.charAt(0);
+        return first >= '0' && first <= '9';
     }
 
     public @NotNull BufferedImage getSheet() {
@@ -54,6 +92,16 @@ public final class IconSet {
         return index <= maximumIconIndex;
     }
 
+    public @NotNull Map<String, Integer> getIconNames() {
+        return names;
+    }
+
+    // returns NO_ICON if there's no icon with this name
+    public int getIconIndex(@NotNull String name) {
+        final var index = names.get(name);
+        return index == null ? NO_ICON : index;
+    }
+
     public void drawIcon(@NotNull Graphics g, int x, int y, @Range(from = 0, to = Integer.MAX_VALUE) int index, @Nullable ImageObserver observer) {
         if (index > maximumIconIndex) {
             throw new IndexOutOfBoundsException(index);
@@ -79,4 +127,28 @@ public final class IconSet {
 
         return sheet.getSubimage(sx, sy, ICON_SIZE, ICON_SIZE);
     }
+
+    // names are read from an object mapping them to indices
+    @Contract("_, _ -> new")
+    public static @NotNull IconSet read(@NotNull BufferedImage sheet, @NotNull JsonReader namesReader) throws IOException {
+        var names = new HashMap<String, Integer>();
+
+        namesReader.beginObject();
+        while (namesReader.hasNext()) {
+            String name = namesReader.nextName();
+            // icon references get trimmed before they're looked up, so a name like this could never be used
+            if (!name.equals(name.trim())) {
+                throw new MalformedJsonException("Icon name \"%s\" has leading or trailing whitespace%s"
+                        .formatted(name, namesReader.locationString()));
+            }
+            names.put(name, namesReader.nextInt());
+        }
+        namesReader.endObject();
+
+        try {
+            return new IconSet(sheet, names);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
 }
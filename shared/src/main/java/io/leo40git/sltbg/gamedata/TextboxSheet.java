@@ -46,14 +46,14 @@ public final class TextboxSheet {
     public void drawTextboxBorder(@NotNull Graphics g, int x, int y) {
         g.drawImage(sheet,
                 x, y, x + TEXTBOX_WIDTH, y + TEXTBOX_HEIGHT,
-                0, TEXTBOX_HEIGHT, TEXTBOX_WIDTH, TEXTBOX_HEIGHT,
+                0, TEXTBOX_HEIGHT, TEXTBOX_WIDTH, TEXTBOX_HEIGHT * 2,
                 null);
     }
 
     public void drawTextboxArrow(@NotNull Graphics g, int x, int y) {
         g.drawImage(sheet,
                 x, y, x + TEXTBOX_WIDTH, y + TEXTBOX_HEIGHT,
-                0, TEXTBOX_HEIGHT * 2, TEXTBOX_WIDTH, TEXTBOX_HEIGHT,
+                0, TEXTBOX_HEIGHT * 2, TEXTBOX_WIDTH, TEXTBOX_HEIGHT * 3,
                 null);
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.leo40git.sltbg.swing;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+
+import org.jetbrains.annotations.NotNull;
+
+// DRAFT is for previews that get redrawn on every keystroke, FINAL is for anything that gets exported
+// both lay out the same, DRAFT just takes every shortcut it can while drawing
+public enum RenderQuality {
+    DRAFT(RenderingHints.VALUE_FRACTIONALMETRICS_OFF, RenderingHints.VALUE_STROKE_NORMALIZE,
+            RenderingHints.VALUE_ANTIALIAS_OFF, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF,
+            RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR, RenderingHints.VALUE_RENDER_SPEED),
+    FINAL(RenderingHints.VALUE_FRACTIONALMETRICS_ON, RenderingHints.VALUE_STROKE_PURE,
+            RenderingHints.VALUE_ANTIALIAS_ON, RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+            RenderingHints.VALUE_INTERPOLATION_BICUBIC, RenderingHints.VALUE_RENDER_QUALITY);
+
+    private final @NotNull Object fractionalMetrics, strokeControl, antialiasing, textAntialiasing;
+    private final @NotNull Object interpolation, rendering;
+
+    RenderQuality(@NotNull Object fractionalMetrics, @NotNull Object strokeControl,
+                  @NotNull Object antialiasing, @NotNull Object textAntialiasing,
+                  @NotNull Object interpolation, @NotNull Object rendering) {
+        this.fractionalMetrics = fractionalMetrics;
+        this.strokeControl = strokeControl;
+        this.antialiasing = antialiasing;
+        this.textAntialiasing = textAntialiasing;
+        this.interpolation = interpolation;
+        this.rendering = rendering;
+    }
+
+    // whether text gets its drop shadow
+    public boolean hasShadows() {
+        return this == FINAL;
+    }
+
+    public void applyTextHints(@NotNull Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalMetrics);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, strokeControl);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, textAntialiasing);
+    }
+
+    // only matters for images that end up scaled, either by drawImage itself or by the transform of g
+    public void applyImageHints(@NotNull Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, rendering);
+    }
+
+    public @NotNull Object getInterpolationHint() {
+        return interpolation;
+    }
+}
@@ -13,16 +13,22 @@ import java.awt.AlphaComposite;
 import java.awt.Composite;
 import java.awt.CompositeContext;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.ImageObserver;
 import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
 
 import io.leo40git.sltbg.gamedata.window.WindowTone;
 import io.leo40git.sltbg.gamedata.window.WindowVersion;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 final class WindowBackground {
     // there are 2 separate layers for this in the Window sheet: a "base" one and an "overlay" one
@@ -32,26 +38,30 @@ final class WindowBackground {
 
     private static final int SRC_TILE_SIZE = 64;
 
+    // backgrounds with at least this many pixels get their rows split up between threads...
+    private static final int PARALLEL_THRESHOLD = 512 * 512;
+    // ...but no thread gets less pixels than this
+    private static final int MIN_PIXELS_PER_TASK = 64 * 1024;
+
     private WindowVersion version;
     private WindowTone tone;
     private float opacity;
     private BufferedImage skinImage;
 
-    private final ThreadLocal<BufferedImage> tlScratch;
+    private final WindowBackgroundCache cache;
 
-    public WindowBackground(WindowVersion version, WindowTone tone, float opacity, BufferedImage skinImage) {
+    public WindowBackground(WindowVersion version, WindowTone tone, float opacity, BufferedImage skinImage,
+                            WindowBackgroundCache cache) {
         this.version = version;
         this.tone = tone;
         this.opacity = opacity;
         this.skinImage = skinImage;
-
-        tlScratch = new ThreadLocal<>();
+        this.cache = cache;
     }
 
     public void setSkin(WindowVersion version, BufferedImage skinImage) {
         this.version = version;
         this.skinImage = skinImage;
-        clearScratch();
     }
 
     public WindowTone getTone() {
@@ -59,10 +69,7 @@ final class WindowBackground {
     }
 
     public void setTone(WindowTone tone) {
-        if (!this.tone.equals(tone)) {
-            this.tone = tone;
-            clearScratch();
-        }
+        this.tone = tone;
     }
 
     public float getOpacity() {
@@ -70,85 +77,115 @@ final class WindowBackground {
     }
 
     public void setOpacity(float opacity) {
-        if (this.opacity != opacity) {
-            this.opacity = opacity;
-            clearScratch();
-        }
+        this.opacity = opacity;
     }
 
     public void paint(Graphics g, int x, int y, int width, int height, ImageObserver observer) {
-        if (opacity <= 0) {
+        if (opacity <= 0 || width <= 0 || height <= 0) {
             return;
         }
 
-        g.drawImage(getScratch(width, height),
-                x, y, x + width, y + height,
-                0, 0, width, height,
-                observer);
+        g.drawImage(cache.get(version, skinImage, tone, opacity, width, height), x, y, observer);
     }
 
-    private BufferedImage getScratch(int width, int height) {
-        var scratch = tlScratch.get();
-        if (scratch == null || scratch.getWidth() < width || scratch.getHeight() < height) {
-            if (scratch != null) {
-                scratch.flush();
+    // backgrounds only depend on these, so they can be shared by every renderer (and every thread) that uses them
+    static BufferedImage createImage(WindowVersion version, BufferedImage skinImage, WindowTone tone, float opacity,
+                                     int width, int height) {
+        int tileSize = version.scale(SRC_TILE_SIZE);
+
+        var base = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        var g = base.createGraphics();
+        try {
+            // draw stretched and tinted base
+            final Composite baseComposite = tone.isEmpty() ? AlphaComposite.Src : new BaseComposite(tone);
+            if ((long) width * height >= PARALLEL_THRESHOLD && height > 1) {
+                // if this is already running in a pool, the bands get forked into that pool instead of the common one
+                new BaseTask(base, skinImage, baseComposite, tileSize, 0, height).invoke();
+            } else {
+                drawBase(g, skinImage, baseComposite, tileSize, width, height);
             }
 
-            int tileSize = version.scale(SRC_TILE_SIZE);
-
-            var scratch2 = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            var g = scratch2.createGraphics();
-            try {
-                // draw stretched and tinted base
-                g.setComposite(tone.isEmpty() ? AlphaComposite.Src : new BaseComposite(tone));
-                g.drawImage(skinImage,
-                        0, 0, width, height,
-                        0, 0, tileSize, tileSize,
-                        null);
-
-                // draw tiled overlay
-                g.setComposite(AlphaComposite.SrcOver);
-                final int tilesWide = width / tileSize, tilesHigh = height / tileSize;
-                for (int ty = 0; ty <= tilesHigh; ty++) {
-                    for (int tx = 0; tx <= tilesWide; tx++) {
-                        g.drawImage(skinImage,
-                                tx * tileSize, ty * tileSize, tileSize, tileSize,
-                                0, tileSize, tileSize, tileSize,
-                                null);
-                    }
+            // draw tiled overlay
+            g.setComposite(AlphaComposite.SrcOver);
+            final int tilesWide = width / tileSize, tilesHigh = height / tileSize;
+            for (int ty = 0; ty <= tilesHigh; ty++) {
+                for (int tx = 0; tx <= tilesWide; tx++) {
+                    final int dx = tx * tileSize, dy = ty * tileSize;
+                    g.drawImage(skinImage,
+                            dx, dy, dx + tileSize, dy + tileSize,
+                            0, tileSize, tileSize, tileSize * 2,
+                            null);
                 }
-            } finally {
-                g.dispose();
             }
+        } finally {
+            g.dispose();
+        }
 
-            if (opacity >= 1) {
-                scratch = scratch2;
-            } else {
-                scratch = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-                g = scratch.createGraphics();
-                try {
-                    // render image at the requested opacity
-                    //  (this could've been done in draw to avoid allocating another BufferedImage,
-                    //   but that would require passing in Graphics2D to draw, which seems pointless)
-                    g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
-                    g.drawImage(scratch2, 0, 0, null);
-                } finally {
-                    g.dispose();
-                    scratch2.flush();
-                }
-            }
+        if (opacity >= 1) {
+            return base;
+        }
 
-            tlScratch.set(scratch);
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        g = image.createGraphics();
+        try {
+            // render image at the requested opacity
+            //  (this could've been done in draw to avoid allocating another BufferedImage,
+            //   but then every paint would pay for it instead of just the first one)
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+            g.drawImage(base, 0, 0, null);
+        } finally {
+            g.dispose();
+            base.flush();
         }
-        return scratch;
+        return image;
+    }
+
+    private static void drawBase(@NotNull Graphics2D g, @NotNull BufferedImage skinImage, @NotNull Composite composite,
+                                 int tileSize, int width, int height) {
+        g.setComposite(composite);
+        g.drawImage(skinImage,
+                0, 0, width, height,
+                0, 0, tileSize, tileSize,
+                null);
     }
 
-    private void clearScratch() {
-        var scratch = tlScratch.get();
-        if (scratch != null) {
-            scratch.flush();
+    // draws the base a band of rows at a time
+    // Java2D picks which source row a band's first row comes from on its own, which can go the other way on a tie,
+    //  so bands are only ever split in the middle of a source row's run to come out exactly like the whole base would
+    private static final class BaseTask extends RecursiveAction {
+        private final @NotNull BufferedImage base, skinImage;
+        private final @NotNull Composite composite;
+        private final int tileSize, fromRow, toRow;
+
+        public BaseTask(@NotNull BufferedImage base, @NotNull BufferedImage skinImage, @NotNull Composite composite,
+                        int tileSize, int fromRow, int toRow) {
+            this.base = base;
+            this.skinImage = skinImage;
+            this.composite = composite;
+            this.tileSize = tileSize;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            final int rows = toRow - fromRow, height = base.getHeight();
+            final long srcRow = ((((fromRow + toRow) >>> 1) * 2L + 1) * tileSize) / (height * 2L);
+            final int mid = (int) (((srcRow * 2 + 1) * height) / (tileSize * 2L));
+            if ((long) base.getWidth() * rows >= MIN_PIXELS_PER_TASK * 2L && mid > fromRow && mid < toRow) {
+                invokeAll(new BaseTask(base, skinImage, composite, tileSize, fromRow, mid),
+                        new BaseTask(base, skinImage, composite, tileSize, mid, toRow));
+                return;
+            }
+
+            final var g = base.getSubimage(0, fromRow, base.getWidth(), rows).createGraphics();
+            try {
+                g.translate(0, -fromRow);
+                drawBase(g, skinImage, composite, tileSize, base.getWidth(), base.getHeight());
+            } finally {
+                g.dispose();
+            }
         }
-        tlScratch.remove();
     }
 
     private static final class BaseComposite implements Composite {
@@ -163,12 +200,26 @@ final class WindowBackground {
             return context;
         }
 
-        @SuppressWarnings("ClassCanBeRecord")
+        // compose is only ever given one tile at a time and may already be running on a pool thread,
+        //  so this stays single-threaded (big backgrounds are split up in createImage instead)
         private static final class Context implements CompositeContext {
             private final WindowTone tone;
+            // the tone's adjustment to every possible value of a channel, already clamped
+            private final int[] redLut, greenLut, blueLut;
 
             private Context(WindowTone tone) {
                 this.tone = tone;
+                redLut = createLut(tone.red());
+                greenLut = createLut(tone.green());
+                blueLut = createLut(tone.blue());
+            }
+
+            private static int @NotNull [] createLut(int adjustment) {
+                final int[] lut = new int[256];
+                for (int i = 0; i < lut.length; i++) {
+                    lut[i] = Math.min(255, Math.max(0, i + adjustment));
+                }
+                return lut;
             }
 
             @Override
@@ -178,19 +229,152 @@ final class WindowBackground {
             public void compose(@NotNull Raster src, Raster dstIn, @NotNull WritableRaster dstOut) {
                 int w = Math.min(src.getWidth(), dstOut.getWidth());
                 int h = Math.min(src.getHeight(), dstOut.getHeight());
+                if (w <= 0 || h <= 0) {
+                    return;
+                }
+
+                if (src.getNumBands() < 3) {
+                    // not something a window skin would ever be, but it still has to come out the same as it used to
+                    composePixels(src, dstOut, w, h);
+                } else {
+                    composeRows(src, dstOut, w, h);
+                }
+            }
+
+            private void composeRows(@NotNull Raster src, @NotNull WritableRaster dstOut, int w, int h) {
+                final var packing = Packing.of(src, dstOut);
+                if (packing != null) {
+                    composePackedRows(packing, src, dstOut, w, h);
+                } else {
+                    composeSampleRows(src, dstOut, w, h);
+                }
+            }
+
+            // the common case: both rasters have one pixel per int with 8-bit channels,
+            //  so whole rows can be copied out, adjusted through the LUTs and copied back in
+            private void composePackedRows(@NotNull Packing packing, @NotNull Raster src, @NotNull WritableRaster dstOut,
+                                           int w, int h) {
+                final int srcRed = packing.srcRed, srcGreen = packing.srcGreen, srcBlue = packing.srcBlue;
+                final int dstRed = packing.dstRed, dstGreen = packing.dstGreen, dstBlue = packing.dstBlue;
+                final int srcAlpha = packing.srcAlpha, dstAlpha = packing.dstAlpha;
+                final boolean copyAlpha = srcAlpha >= 0 && dstAlpha >= 0;
+                final int keepMask = packing.keepMask;
+                final int srcX = src.getMinX(), dstX = dstOut.getMinX();
+
+                final int[] srcRow = new int[w];
+                final int[] dstRow = keepMask == 0 ? srcRow : new int[w];
+                for (int y = 0; y < h; y++) {
+                    src.getDataElements(srcX, y + src.getMinY(), w, 1, srcRow);
+                    if (keepMask != 0) {
+                        dstOut.getDataElements(dstX, y + dstOut.getMinY(), w, 1, dstRow);
+                    }
+                    for (int x = 0; x < w; x++) {
+                        final int p = srcRow[x];
+                        int q = (dstRow[x] & keepMask)
+                                | redLut[(p >>> srcRed) & 0xFF] << dstRed
+                                | greenLut[(p >>> srcGreen) & 0xFF] << dstGreen
+                                | blueLut[(p >>> srcBlue) & 0xFF] << dstBlue;
+                        if (copyAlpha) {
+                            q |= ((p >>> srcAlpha) & 0xFF) << dstAlpha;
+                        }
+                        dstRow[x] = q;
+                    }
+                    dstOut.setDataElements(dstX, y + dstOut.getMinY(), w, 1, dstRow);
+                }
+            }
+
+            // everything else still goes a row at a time, just not through the LUTs since samples might not be 8-bit
+            private void composeSampleRows(@NotNull Raster src, @NotNull WritableRaster dstOut, int w, int h) {
+                final int srcBands = src.getNumBands(), dstBands = dstOut.getNumBands();
+                final int[] srcRow = new int[w * srcBands];
+                final int[] dstRow = new int[w * dstBands];
+                for (int y = 0; y < h; y++) {
+                    src.getPixels(src.getMinX(), y + src.getMinY(), w, 1, srcRow);
+                    for (int x = 0; x < w; x++) {
+                        final int si = x * srcBands, di = x * dstBands;
+                        for (int band = 0; band < dstBands; band++) {
+                            final int sample;
+                            if (band < 3) {
+                                sample = adjust(srcRow[si + band], band);
+                            } else {
+                                // bands the source doesn't have come out as 0
+                                sample = band < srcBands ? srcRow[si + band] : 0;
+                            }
+                            dstRow[di + band] = sample;
+                        }
+                    }
+                    dstOut.setPixels(dstOut.getMinX(), y + dstOut.getMinY(), w, 1, dstRow);
+                }
+            }
 
+            // the original pixel by pixel implementation, where the channels the source doesn't have
+            //  carry over from one pixel to the next
+            private void composePixels(@NotNull Raster src, @NotNull WritableRaster dstOut, int w, int h) {
                 int[] srcRgba = new int[4];
 
                 for (int x = 0; x < w; x++) {
                     for (int y = 0; y < h; y++) {
                         src.getPixel(x + src.getMinX(), y + src.getMinY(), srcRgba);
-                        srcRgba[0] = Math.min(255, Math.max(0, srcRgba[0] + tone.red()));
-                        srcRgba[1] = Math.min(255, Math.max(0, srcRgba[1] + tone.green()));
-                        srcRgba[2] = Math.min(255, Math.max(0, srcRgba[2] + tone.blue()));
+                        srcRgba[0] = adjust(srcRgba[0], 0);
+                        srcRgba[1] = adjust(srcRgba[1], 1);
+                        srcRgba[2] = adjust(srcRgba[2], 2);
                         dstOut.setPixel(x + dstOut.getMinX(), y + dstOut.getMinY(), srcRgba);
                     }
                 }
             }
+
+            private int adjust(int sample, int band) {
+                final int adjustment = switch (band) {
+                    case 0 -> tone.red();
+                    case 1 -> tone.green();
+                    default -> tone.blue();
+                };
+                return Math.min(255, Math.max(0, sample + adjustment));
+            }
+        }
+
+        // where the channels are in packed int pixels, -1 for alpha if there isn't any
+        private record Packing(int srcRed, int srcGreen, int srcBlue, int srcAlpha,
+                               int dstRed, int dstGreen, int dstBlue, int dstAlpha,
+                               int keepMask) {
+            public static @Nullable Packing of(@NotNull Raster src, @NotNull Raster dst) {
+                if (src.getTransferType() != DataBuffer.TYPE_INT || dst.getTransferType() != DataBuffer.TYPE_INT
+                        || !(src.getSampleModel() instanceof SinglePixelPackedSampleModel srcModel)
+                        || !(dst.getSampleModel() instanceof SinglePixelPackedSampleModel dstModel)) {
+                    return null;
+                }
+
+                final int[] srcShifts = getShifts(srcModel), dstShifts = getShifts(dstModel);
+                if (srcShifts == null || dstShifts == null) {
+                    return null;
+                }
+
+                // bits that aren't part of any channel stay whatever they were in the destination
+                int keepMask = ~0;
+                for (int mask : dstModel.getBitMasks()) {
+                    keepMask &= ~mask;
+                }
+                return new Packing(srcShifts[0], srcShifts[1], srcShifts[2], srcShifts[3],
+                        dstShifts[0], dstShifts[1], dstShifts[2], dstShifts[3],
+                        keepMask);
+            }
+
+            // null unless the model has 3 or 4 channels that are all 8 bits wide
+            private static int @Nullable [] getShifts(@NotNull SinglePixelPackedSampleModel model) {
+                final int[] masks = model.getBitMasks(), offsets = model.getBitOffsets();
+                if (masks.length < 3 || masks.length > 4) {
+                    return null;
+                }
+
+                final int[] shifts = { -1, -1, -1, -1 };
+                for (int band = 0; band < masks.length; band++) {
+                    if (masks[band] != 0xFF << offsets[band]) {
+                        return null;
+                    }
+                    shifts[band] = offsets[band];
+                }
+                return shifts;
+            }
         }
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.leo40git.sltbg.swing.gamedata.window;
+
+import java.awt.image.BufferedImage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.leo40git.sltbg.gamedata.window.WindowTone;
+import io.leo40git.sltbg.gamedata.window.WindowVersion;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Range;
+
+// keeps composited window backgrounds around, so that every renderer and thread drawing the same window shares one image
+// skins are told apart by identity, so skin images must not be modified once they've been handed to a renderer
+public final class WindowBackgroundCache {
+    private static final WindowBackgroundCache SHARED = new WindowBackgroundCache();
+
+    private final @NotNull Cache<Key, BufferedImage> cache;
+
+    // cacheBuilder must be bounded by maximumWeight, entries are weighed by their number of pixels
+    public WindowBackgroundCache(@NotNull Caffeine<Object, Object> cacheBuilder) {
+        cache = cacheBuilder
+                .weigher(WindowBackgroundCache::weigh)
+                .recordStats()
+                .build();
+    }
+
+    public WindowBackgroundCache() {
+        this(createDefaultCacheBuilder());
+    }
+
+    public static @NotNull WindowBackgroundCache shared() {
+        return SHARED;
+    }
+
+    // the returned image must not be modified
+    public @NotNull BufferedImage get(@NotNull WindowVersion version, @NotNull BufferedImage skinImage, @NotNull WindowTone tone,
+                                      float opacity, @Range(from = 1, to = Integer.MAX_VALUE) int width,
+                                      @Range(from = 1, to = Integer.MAX_VALUE) int height) {
+        return cache.get(new Key(version, skinImage, tone, opacity, width, height), WindowBackgroundCache::createImage);
+    }
+
+    public @NotNull CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static @NotNull BufferedImage createImage(@NotNull Key key) {
+        return WindowBackground.createImage(key.version(), key.skinImage(), key.tone(), key.opacity(), key.width(), key.height());
+    }
+
+    private static int weigh(@NotNull Key key, @NotNull BufferedImage image) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) key.width() * key.height());
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder(@Range(from = 1, to = Long.MAX_VALUE) long maximumPixels) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumPixels);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder() {
+        // 64 MiB worth of ARGB pixels
+        return createDefaultCacheBuilder(16 * 1024 * 1024);
+    }
+
+    // BufferedImage doesn't override equals, so skins are compared by identity
+    private record Key(@NotNull WindowVersion version, @NotNull BufferedImage skinImage, @NotNull WindowTone tone,
+                       float opacity, int width, int height) { }
+}
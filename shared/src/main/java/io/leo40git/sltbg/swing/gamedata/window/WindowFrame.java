@@ -88,7 +88,7 @@ final class WindowFrame {
         paintPiece(g, PIECE_CL, x, centerY, pieceSize, centerHeight, observer);
         paintPiece(g, PIECE_CR, rightX, centerY, pieceSize, centerHeight, observer);
 
-        final int bottomY = height - pieceSize;
+        final int bottomY = y + height - pieceSize;
         paintPiece(g, PIECE_BL, x, bottomY, pieceSize, pieceSize, observer);
         paintPiece(g, PIECE_BM, x + pieceSize, bottomY, width - pieceMWidth, pieceSize, observer);
         paintPiece(g, PIECE_BR, rightX, bottomY, pieceSize, pieceSize, observer);
@@ -97,7 +97,7 @@ final class WindowFrame {
     private void paintPiece(Graphics g, int i, int x, int y, int width, int height, ImageObserver observer) {
         final int[] piece = pieces[i];
         g.drawImage(skinImage,
-                x, y, x + width, x + height,
+                x, y, x + width, y + height,
                 piece[0], piece[1], piece[0] + piece[2], piece[1] + piece[3],
                 observer);
     }
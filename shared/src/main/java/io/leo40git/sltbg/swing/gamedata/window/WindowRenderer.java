@@ -11,17 +11,20 @@ package io.leo40git.sltbg.swing.gamedata.window;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 
 import io.leo40git.sltbg.gamedata.window.WindowTone;
 import io.leo40git.sltbg.gamedata.window.WindowVersion;
+import io.leo40git.sltbg.swing.RenderQuality;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Range;
 
 public final class WindowRenderer {
     public static final int PROMPT_FRAME_COUNT = WindowPrompt.FRAME_COUNT;
+    public static final int NO_PROMPT = -1;
     public static final int COLOR_COUNT = 32;
 
     private static final int SRC_IMAGE_SIZE = 128;
@@ -36,19 +39,31 @@ public final class WindowRenderer {
     private final WindowFrame frame;
     private final WindowPrompt prompt;
     private final Color[] colors;
+    private final WindowImageCache windowCache;
 
     public WindowRenderer(@NotNull WindowVersion version, @NotNull BufferedImage skinImage, @NotNull WindowTone tone, float opacity) {
+        this(version, skinImage, tone, opacity, WindowBackgroundCache.shared(), WindowImageCache.shared());
+    }
+
+    public WindowRenderer(@NotNull WindowVersion version, @NotNull BufferedImage skinImage, @NotNull WindowTone tone, float opacity,
+                          @NotNull WindowBackgroundCache backgroundCache) {
+        this(version, skinImage, tone, opacity, backgroundCache, WindowImageCache.shared());
+    }
+
+    public WindowRenderer(@NotNull WindowVersion version, @NotNull BufferedImage skinImage, @NotNull WindowTone tone, float opacity,
+                          @NotNull WindowBackgroundCache backgroundCache, @NotNull WindowImageCache windowCache) {
         checkOpacity(opacity);
         checkSkin(version, skinImage);
 
         this.version = version;
         this.skinImage = skinImage;
 
-        background = new WindowBackground(version, tone, opacity, skinImage);
+        background = new WindowBackground(version, tone, opacity, skinImage, backgroundCache);
         frame = new WindowFrame(version, skinImage);
         prompt = new WindowPrompt(version, skinImage);
         colors = new Color[COLOR_COUNT];
         initColors();
+        this.windowCache = windowCache;
     }
 
     private static void checkOpacity(float opacity) {
@@ -58,8 +73,12 @@ public final class WindowRenderer {
         }
     }
 
+    public static int getSkinImageSize(@NotNull WindowVersion version) {
+        return version.scale(SRC_IMAGE_SIZE);
+    }
+
     private static void checkSkin(@NotNull WindowVersion version, @NotNull BufferedImage skinImage) {
-        int imageSize = version.scale(SRC_IMAGE_SIZE);
+        int imageSize = getSkinImageSize(version);
         if (skinImage.getWidth() != imageSize || skinImage.getHeight() != imageSize) {
             throw new IllegalArgumentException("skinImage has incorrect dimensions: expected %d x %1$d, got %d x %d"
                     .formatted(imageSize, skinImage.getWidth(), skinImage.getHeight()));
@@ -111,15 +130,45 @@ public final class WindowRenderer {
         background.paint(g, x, y, width, height, observer);
     }
 
+    public void paintBackground(@NotNull Graphics2D g, int x, int y, int width, int height,
+                                @NotNull RenderQuality quality, @Nullable ImageObserver observer) {
+        var g2 = createGraphics(g, quality);
+        try {
+            paintBackground(g2, x, y, width, height, observer);
+        } finally {
+            g2.dispose();
+        }
+    }
+
     public void paintBackgroundWithMargin(@NotNull Graphics g, int x, int y, int width, int height, @Nullable ImageObserver observer) {
         int margin = version.getMargin();
         background.paint(g, x + margin, y + margin, width - margin * 2, height - margin * 2, observer);
     }
 
+    public void paintBackgroundWithMargin(@NotNull Graphics2D g, int x, int y, int width, int height,
+                                          @NotNull RenderQuality quality, @Nullable ImageObserver observer) {
+        var g2 = createGraphics(g, quality);
+        try {
+            paintBackgroundWithMargin(g2, x, y, width, height, observer);
+        } finally {
+            g2.dispose();
+        }
+    }
+
     public void paintFrame(@NotNull Graphics g, int x, int y, int width, int height, @Nullable ImageObserver observer) {
         frame.paint(g, x, y, width, height, observer);
     }
 
+    public void paintFrame(@NotNull Graphics2D g, int x, int y, int width, int height,
+                           @NotNull RenderQuality quality, @Nullable ImageObserver observer) {
+        var g2 = createGraphics(g, quality);
+        try {
+            paintFrame(g2, x, y, width, height, observer);
+        } finally {
+            g2.dispose();
+        }
+    }
+
     public int getPadding() {
         return version.getPadding();
     }
@@ -129,6 +178,16 @@ public final class WindowRenderer {
         prompt.paintFrame(g, frame, x, y, observer);
     }
 
+    public void paintPrompt(@NotNull Graphics2D g, @Range(from = 0, to = PROMPT_FRAME_COUNT - 1) int frame,
+                            int x, int y, @NotNull RenderQuality quality, @Nullable ImageObserver observer) {
+        var g2 = createGraphics(g, quality);
+        try {
+            paintPrompt(g2, frame, x, y, observer);
+        } finally {
+            g2.dispose();
+        }
+    }
+
     public int getPromptSize() {
         return prompt.getFrameSize();
     }
@@ -141,6 +200,67 @@ public final class WindowRenderer {
         prompt.paintFrame(g, frame, x, y, observer);
     }
 
+    public void paintPromptInFrame(@NotNull Graphics2D g, @Range(from = 0, to = PROMPT_FRAME_COUNT - 1) int frame,
+                                   int x, int y, int width, int height,
+                                   @NotNull RenderQuality quality, @Nullable ImageObserver observer) {
+        var g2 = createGraphics(g, quality);
+        try {
+            paintPromptInFrame(g2, frame, x, y, width, height, observer);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    // returns the background, frame and (unless promptFrame is NO_PROMPT) prompt composited into one image,
+    //  which is kept in this renderer's WindowImageCache
+    // the returned image is shared with every other caller (including ones on other threads), so it must not be modified
+    // the setters above must not be called while other threads are rendering windows with this renderer
+    public @NotNull BufferedImage renderWindow(@Range(from = 1, to = Integer.MAX_VALUE) int width,
+                                               @Range(from = 1, to = Integer.MAX_VALUE) int height,
+                                               @Range(from = NO_PROMPT, to = PROMPT_FRAME_COUNT - 1) int promptFrame) {
+        return renderWindow(width, height, promptFrame, RenderQuality.FINAL);
+    }
+
+    public @NotNull BufferedImage renderWindow(@Range(from = 1, to = Integer.MAX_VALUE) int width,
+                                               @Range(from = 1, to = Integer.MAX_VALUE) int height,
+                                               @Range(from = NO_PROMPT, to = PROMPT_FRAME_COUNT - 1) int promptFrame,
+                                               @NotNull RenderQuality quality) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("window size must be positive, but was %d x %d".formatted(width, height));
+        }
+        if (promptFrame < NO_PROMPT || promptFrame >= PROMPT_FRAME_COUNT) {
+            throw new IllegalArgumentException("promptFrame is out of bounds: must be between %d and %d (inclusive), but was %d"
+                    .formatted(NO_PROMPT, PROMPT_FRAME_COUNT - 1, promptFrame));
+        }
+
+        return windowCache.get(version, skinImage, background.getTone(), background.getOpacity(), width, height, promptFrame, quality,
+                () -> createWindow(width, height, promptFrame, quality));
+    }
+
+    private @NotNull BufferedImage createWindow(int width, int height, int promptFrame, @NotNull RenderQuality quality) {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        var g = image.createGraphics();
+        try {
+            quality.applyImageHints(g);
+            paintBackgroundWithMargin(g, 0, 0, width, height, null);
+            paintFrame(g, 0, 0, width, height, null);
+            if (promptFrame != NO_PROMPT) {
+                paintPromptInFrame(g, promptFrame, 0, 0, width, height, null);
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    // the overloads without a RenderQuality paint with whatever hints g already has
+    // the frame's middle pieces are always stretched, so this matters even when g isn't scaled
+    private static @NotNull Graphics2D createGraphics(@NotNull Graphics2D g, @NotNull RenderQuality quality) {
+        var g2 = (Graphics2D) g.create();
+        quality.applyImageHints(g2);
+        return g2;
+    }
+
     private void initColors() {
         // this is simple: there are 32 colored squares on the Window sheet,
         //  these directly map to the available 32 preset colors
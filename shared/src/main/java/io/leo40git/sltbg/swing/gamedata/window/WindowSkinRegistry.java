@@ -0,0 +1,213 @@
+/*
+ * To the extent possible under law, the author(s) have dedicated all copyright
+ * and related and neighboring rights to this software to the public domain worldwide.
+ * This software is distributed without any warranty.
+ *
+ * A copy of the Unlicense should have been supplied as LICENSE in this repository.
+ * Alternatively, you can find it at <https://unlicense.org/>.
+ */
+
+package io.leo40git.sltbg.swing.gamedata.window;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.leo40git.sltbg.gamedata.window.WindowTone;
+import io.leo40git.sltbg.gamedata.window.WindowVersion;
+import io.leo40git.sltbg.swing.util.ImageUtils;
+import io.leo40git.sltbg.util.FileUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Range;
+
+// indexes window skins by name, and only decodes a skin the first time a renderer is requested for it
+// decoded skins are kept in an LRU cache bounded by memory, and ready renderers (along with their palette and piece tables)
+//  in another one, so switching back to a skin that was used recently doesn't need to redo any of that
+// every renderer shares the registry's background and window caches, which are bounded on their own
+// renderers handed out by this are shared, so their setters must not be called
+public final class WindowSkinRegistry {
+    // renderers share their skin's image, so they're cheap to keep around
+    // this just stops tones and opacities that were only used once from piling up
+    private static final int MAXIMUM_RENDERERS = 256;
+
+    private final @NotNull Map<String, Entry> entries;
+    // keyed on the entry itself rather than its name, so a skin that gets registered again can never be built
+    //  from the previous file's pixels
+    private final @NotNull LoadingCache<Entry, BufferedImage> skinCache;
+    private final @NotNull LoadingCache<Key, WindowRenderer> rendererCache;
+    private final @NotNull WindowBackgroundCache backgroundCache;
+    private final @NotNull WindowImageCache windowCache;
+
+    // cacheBuilder must be bounded by maximumWeight (and can't have a removal listener), skins are weighed by their memory footprint
+    // every tone and opacity of a skin shares its image, so it only counts once no matter how many renderers use it
+    // composited backgrounds and pre-baked windows aren't part of that weight, they're bounded by their own caches instead
+    public WindowSkinRegistry(@NotNull Caffeine<Object, Object> cacheBuilder,
+                              @NotNull WindowBackgroundCache backgroundCache, @NotNull WindowImageCache windowCache) {
+        this.backgroundCache = backgroundCache;
+        this.windowCache = windowCache;
+        entries = new ConcurrentHashMap<>();
+        skinCache = cacheBuilder
+                .weigher(WindowSkinRegistry::weighSkin)
+                .removalListener(this::onSkinRemoved)
+                .build(WindowSkinRegistry::readSkin);
+        rendererCache = Caffeine.newBuilder()
+                .maximumSize(MAXIMUM_RENDERERS)
+                .recordStats()
+                .build(this::loadRenderer);
+    }
+
+    public WindowSkinRegistry(@NotNull Caffeine<Object, Object> cacheBuilder) {
+        this(cacheBuilder, WindowBackgroundCache.shared(), WindowImageCache.shared());
+    }
+
+    public WindowSkinRegistry() {
+        this(createDefaultCacheBuilder());
+    }
+
+    public void register(@NotNull String name, @NotNull Path path, @NotNull WindowVersion version) {
+        var old = entries.put(name, new Entry(path, version));
+        if (old != null) {
+            invalidate(old);
+        }
+    }
+
+    // registers every PNG file in dir under its file name (without the extension)
+    public void registerDirectory(@NotNull Path dir, @NotNull WindowVersion version) throws IOException {
+        try (var ds = Files.newDirectoryStream(dir, "*.png")) {
+            for (var path : ds) {
+                if (Files.isRegularFile(path)) {
+                    var fileName = path.getFileName().toString();
+                    var suffix = FileUtils.getFileSuffix(fileName);
+                    register(fileName.substring(0, fileName.length() - suffix.length() - 1), path, version);
+                }
+            }
+        }
+    }
+
+    public boolean unregister(@NotNull String name) {
+        var old = entries.remove(name);
+        if (old != null) {
+            invalidate(old);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean contains(@NotNull String name) {
+        return entries.containsKey(name);
+    }
+
+    public @NotNull NavigableSet<String> getNames() {
+        return new TreeSet<>(entries.keySet());
+    }
+
+    public @NotNull WindowRenderer getRenderer(@NotNull String name, @NotNull WindowTone tone, float opacity) throws IOException {
+        var entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("no window skin named \"%s\" has been registered".formatted(name));
+        }
+
+        try {
+            return rendererCache.get(new Key(entry, tone, opacity));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw e;
+        }
+    }
+
+    public @NotNull CacheStats stats() {
+        return rendererCache.stats();
+    }
+
+    public long estimatedSize() {
+        return rendererCache.estimatedSize();
+    }
+
+    public void invalidateAll() {
+        skinCache.invalidateAll();
+        rendererCache.invalidateAll();
+    }
+
+    private void invalidate(@NotNull Entry entry) {
+        skinCache.invalidate(entry);
+        rendererCache.asMap().keySet().removeIf(key -> key.entry() == entry);
+    }
+
+    // renderers would keep their skin's image alive, so they go along with it
+    private void onSkinRemoved(@Nullable Entry entry, @Nullable BufferedImage image, @NotNull RemovalCause cause) {
+        if (entry != null) {
+            rendererCache.asMap().keySet().removeIf(key -> key.entry() == entry);
+        }
+    }
+
+    private @NotNull WindowRenderer loadRenderer(@NotNull Key key) {
+        // every tone and opacity of the same skin gets the same image, so it only needs to be decoded once
+        //  (this also lets them share composited backgrounds, since those are keyed on the skin image)
+        final var entry = key.entry();
+        return new WindowRenderer(entry.version, skinCache.get(entry), key.tone(), key.opacity(), backgroundCache, windowCache);
+    }
+
+    private static @NotNull BufferedImage readSkin(@NotNull Entry entry) throws IOException {
+        BufferedImage image;
+        try (var input = Files.newInputStream(entry.path)) {
+            image = ImageIO.read(input);
+        }
+
+        if (image == null) {
+            throw new IOException("File at \"%s\" is not a supported image".formatted(entry.path));
+        }
+
+        final int size = WindowRenderer.getSkinImageSize(entry.version);
+        if (image.getWidth() != size || image.getHeight() != size) {
+            throw new IOException("Image at \"%s\" has incorrect dimensions: should be %d x %d, but was %d x %d"
+                    .formatted(entry.path, size, size, image.getWidth(), image.getHeight()));
+        }
+
+        return image;
+    }
+
+    private static int weighSkin(@NotNull Entry entry, @NotNull BufferedImage image) {
+        return ImageUtils.getApproximateMemoryFootprint(image);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder(@Range(from = 1, to = Long.MAX_VALUE) long maximumBytes) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumBytes);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull Caffeine<Object, Object> createDefaultCacheBuilder() {
+        // 32 MiB, a bit over 200 MV skins
+        return createDefaultCacheBuilder(32 * 1024 * 1024);
+    }
+
+    // compared by identity, every registration is its own skin even if it points to the same file as an earlier one
+    private static final class Entry {
+        public final @NotNull Path path;
+        public final @NotNull WindowVersion version;
+
+        public Entry(@NotNull Path path, @NotNull WindowVersion version) {
+            this.path = path;
+            this.version = version;
+        }
+    }
+
+    private record Key(@NotNull Entry entry, @NotNull WindowTone tone, float opacity) { }
+}